@@ -5,15 +5,27 @@ import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import javax.swing.SwingUtilities;
 
 import view.SystemTrayView;
 import view.AfterInsertionPopup;
 
 import model.SQLManager;
-import model.VocabularyBox;
+import model.SearchResult;
+import model.Tokenizer;
+import model.CardBox;
 import model.VocabularyCard;
 
 /**
@@ -22,29 +34,95 @@ import model.VocabularyCard;
  * String) will be inserted into a VocabularyBox only if 'auto insert on Ctrl+C'
  * is selected. In that case the SystemTrayView additionally displays a message
  * that includes the translation looked up in a database or an information that
- * the box includes the vocabulary already.
+ * the box includes the vocabulary already. The translation is looked up
+ * asynchronously, so the clipboard is not blocked by the database; the box is
+ * updated and the messages are shown on the event dispatch thread. Inflected
+ * forms like "went" find the translations of their base form. If no
+ * translation is found, translations of similar words are offered instead.
+ * Copied sentences are split into words and phrases, which are looked up
+ * together and added to the box as separate vocabularies.
  * 
  * @author Sebastian Brockmeyer
  * 
  */
 public class ContentInserter implements ClipboardContentChangeListener {
-	private VocabularyBox box;
+	/**
+	 * The maximum number of translations offered in the popup.
+	 */
+	public static final int MAX_TRANSLATIONS = 50;
+
+	/**
+	 * The minimum length of a vocabulary that is looked up with typos. Shorter
+	 * ones are similar to too many words.
+	 */
+	public static final int MIN_FUZZY_LENGTH = 3;
+
+	/**
+	 * The maximum number of words of a copied text that is inserted as a
+	 * single vocabulary. Longer texts are split into words and phrases of up
+	 * to this many words.
+	 */
+	public static final int MAX_PHRASE_WORDS = 3;
+
+	/**
+	 * The maximum number of translations offered per word or phrase of a
+	 * split text.
+	 */
+	public static final int MAX_TEXT_TRANSLATIONS = 3;
+
+	private CardBox box;
 	private SystemTrayView view;
 	private SQLManager manager;
 	private AfterInsertionPopup popup;
 
+	/**
+	 * Appends the entries of the second result that are not contained in the
+	 * first one, keeping at most <tt>MAX_TRANSLATIONS</tt> entries.
+	 */
+	private static final BiFunction<SearchResult, SearchResult, SearchResult> MERGE = new BiFunction<SearchResult, SearchResult, SearchResult>() {
+
+		@Override
+		public SearchResult apply(SearchResult first, SearchResult second) {
+			LinkedList<String[]> entries = first.getEntries();
+			boolean more = first.hasMore() || second.hasMore();
+			for (String[] entry : second.getEntries()) {
+				if (containsEntry(entries, Arrays.asList(entry)))
+					continue;
+				if (entries.size() == MAX_TRANSLATIONS) {
+					more = true;
+					break;
+				}
+				entries.add(entry);
+			}
+			return new SearchResult(entries, more);
+		}
+
+	};
+
+	/**
+	 * Runs the completion of lookups on the event dispatch thread.
+	 */
+	private static final Executor EDT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			SwingUtilities.invokeLater(command);
+		}
+
+	};
+
 	/**
 	 * Creates a new ContentInserter.
 	 * 
 	 * @param box
-	 *            the <tt>VocabularyBox</tt> the new contents will be inserted
+	 *            the <tt>CardBox</tt> the new contents will be inserted
 	 *            into as vocabularies
 	 * @param manager
 	 *            the <tt>SQLManager</tt> where the translation is looked up
 	 * @param view
 	 *            the SystemTrayView that shall show the messages
 	 */
-	public ContentInserter(VocabularyBox box, SQLManager manager,
+	public ContentInserter(CardBox box, SQLManager manager,
 			SystemTrayView view) {
 		this.box = box;
 		this.view = view;
@@ -60,50 +138,178 @@ public class ContentInserter implements ClipboardContentChangeListener {
 			if (!content.isDataFlavorSupported(DataFlavor.stringFlavor))
 				return;
 			
-			String display = "";
 			String vocabu = (String) content
 					.getTransferData(DataFlavor.stringFlavor);
 			final String vocab = vocabu.trim();
 
-			final String[][] germans = manager
-					.searchForEnglish(vocab, true).toArray(
-							new String[][] {});
+			if (Tokenizer.words(vocab).size() > MAX_PHRASE_WORDS) {
+				lookUpText(vocab);
+				return;
+			}
+
+			// the entries of the base form (e.g. "to go" for "went") come
+			// first, then those containing the copied text
+			lookUp(vocab,
+					manager.searchForEnglishLemmaAsync(vocab, MAX_TRANSLATIONS)
+							.thenCombine(
+									manager.searchForEnglishAsync(vocab, true,
+											MAX_TRANSLATIONS), MERGE), false);
+
+		} catch (UnsupportedFlavorException e) {
+			e.printStackTrace();
+			throw new RuntimeException("UnsupportedFlavorException occured:\n"
+					+ e.getMessage());
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("IOException occured:\n"
+					+ e.getMessage());
+		}
+
+	}
 
-			int caseNo = box.find(vocab);
-			if (caseNo < 0) {
-				if (germans.length == 0) {
-					display = "'" + vocab + "' was not found in database";
-					view.displayMessage(null, display, MessageType.WARNING);
+	/**
+	 * Calls <tt>showResult</tt> on the event dispatch thread as soon as
+	 * <tt>lookup</tt> completes.
+	 */
+	private void lookUp(final String vocab,
+			CompletableFuture<SearchResult> lookup, final boolean fuzzy) {
+		lookup.whenCompleteAsync(new BiConsumer<SearchResult, Throwable>() {
+
+			@Override
+			public void accept(SearchResult result, Throwable failure) {
+				if (failure != null) {
+					failure.printStackTrace();
+					view.displayMessage(null, "'" + vocab
+							+ "' could not be looked up", MessageType.ERROR);
 				} else {
-					popup = new AfterInsertionPopup(germans);
-					popup.setFinalAction(new FinalAction<Collection<Integer>>() {
-
-						@Override
-						public void run(Collection<Integer> param) {
-							if (!param.isEmpty()) {
-								VocabularyCard card = new VocabularyCard(
-										vocab);
-								box.insert(card);
-								for (int i : param) {
-									card.addGerman(germans[i]);
+					showResult(vocab, result, fuzzy);
+				}
+			}
+
+		}, EDT);
+	}
+
+	/**
+	 * Looks up all words and phrases of a copied text with a single query and
+	 * calls <tt>showTextResult</tt> on the event dispatch thread.
+	 */
+	private void lookUpText(final String text) {
+		manager.searchForEnglishTermsAsync(
+				Tokenizer.terms(text, MAX_PHRASE_WORDS), MAX_TEXT_TRANSLATIONS)
+				.whenCompleteAsync(
+						new BiConsumer<Map<String, SearchResult>, Throwable>() {
+
+							@Override
+							public void accept(
+									Map<String, SearchResult> results,
+									Throwable failure) {
+								if (failure != null) {
+									failure.printStackTrace();
+									view.displayMessage(null,
+											"The copied text could not be looked up",
+											MessageType.ERROR);
+								} else {
+									showTextResult(results);
 								}
 							}
-						}
 
-					});
-				}
-			} else {					
-				popup = new AfterInsertionPopup(germans);
-				
-				VocabularyCard card = box.remove(vocab);
-				List<List<String>> selected = card.getGermans();
-				
-				for(int i = 0; i < germans.length; i++) {
-					if(selected.contains(Arrays.asList(germans[i]))) {
-						popup.addSelected(i);
+						}, EDT);
+	}
+
+	/**
+	 * Offers the translations of the words and phrases of a copied text that
+	 * are not in the box yet, in the order of the text. Every chosen
+	 * translation is added to the card of its word or phrase. Runs on the
+	 * event dispatch thread.
+	 */
+	private void showTextResult(Map<String, SearchResult> results) {
+		final List<String> vocabs = new ArrayList<String>();
+		List<String[]> entries = new ArrayList<String[]>();
+		for (Map.Entry<String, SearchResult> result : results.entrySet()) {
+			if (box.find(result.getKey()) >= 0)
+				continue;
+			for (String[] entry : result.getValue().getEntries()) {
+				// e.g. "went" and "goes" find the same entries
+				if (containsEntry(entries, Arrays.asList(entry)))
+					continue;
+				vocabs.add(result.getKey());
+				entries.add(entry);
+			}
+		}
+
+		if (entries.isEmpty()) {
+			String display = "No new words of the copied text were found in database";
+			view.displayMessage(null, display, MessageType.WARNING);
+			return;
+		}
+
+		final String[][] germans = entries.toArray(new String[][] {});
+		popup = new AfterInsertionPopup(germans);
+		popup.setTitle("Translations of the copied text");
+		popup.setFinalAction(new FinalAction<Collection<Integer>>() {
+
+			@Override
+			public void run(Collection<Integer> param) {
+				// the cards are inserted with all their translations, so the
+				// journal records them completely
+				Map<String, VocabularyCard> cards = new LinkedHashMap<String, VocabularyCard>();
+				for (int i : param) {
+					VocabularyCard card = cards.get(vocabs.get(i));
+					if (card == null) {
+						card = new VocabularyCard(vocabs.get(i));
+						cards.put(vocabs.get(i), card);
 					}
+					card.addGerman(germans[i]);
+				}
+				for (VocabularyCard card : cards.values()) {
+					box.insert(card);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Inserts the vocabulary or updates its card after the translations have
+	 * been looked up. If nothing was found for a new vocabulary, similar words
+	 * are looked up, as the vocabulary may contain a typo. Runs on the event
+	 * dispatch thread.
+	 */
+	private void showResult(final String vocab, SearchResult result,
+			boolean fuzzy) {
+		LinkedList<String[]> entries = result.getEntries();
+		if (!fuzzy && entries.isEmpty() && vocab.length() >= MIN_FUZZY_LENGTH
+				&& box.find(vocab) < 0) {
+			int maxDistance = vocab.length() < 6 ? 1 : 2;
+			lookUp(vocab, manager.searchForEnglishFuzzyAsync(vocab,
+					maxDistance, MAX_TRANSLATIONS), true);
+			return;
+		}
+
+		String display = "";
+		int caseNo = box.find(vocab);
+		VocabularyCard old = caseNo < 0 ? null : box.remove(vocab);
+		if (old != null) {
+			// translations selected before must be offered, even if they
+			// are not among the best ones
+			for (List<String> german : old.getGermans()) {
+				if (!containsEntry(entries, german))
+					entries.add(german.toArray(new String[german.size()]));
+			}
+		}
+		final String[][] germans = entries.toArray(new String[][] {});
+
+		if (caseNo < 0) {
+			if (germans.length == 0) {
+				display = "'" + vocab + "' was not found in database";
+				view.displayMessage(null, display, MessageType.WARNING);
+			} else {
+				if (fuzzy) {
+					display = "'" + vocab
+							+ "' was not found in database, showing similar words";
+					view.displayMessage(null, display, MessageType.INFO);
 				}
-				
+				popup = newPopup(germans, result.hasMore());
 				popup.setFinalAction(new FinalAction<Collection<Integer>>() {
 
 					@Override
@@ -111,32 +317,65 @@ public class ContentInserter implements ClipboardContentChangeListener {
 						if (!param.isEmpty()) {
 							VocabularyCard card = new VocabularyCard(
 									vocab);
-							box.insert(card);
 							for (int i : param) {
 								card.addGerman(germans[i]);
 							}
+							box.insert(card);
 						}
 					}
 
 				});
-				
-				display = "'" + vocab
-						+ "' is already in the vocabulary box in case "
-						+ (caseNo + 1);
-				view.displayMessage(null, display, MessageType.INFO);
 			}
-			System.out.println(display);// for debugging
+		} else {					
+			popup = newPopup(germans, result.hasMore());
 			
-		} catch (UnsupportedFlavorException e) {
-			e.printStackTrace();
-			throw new RuntimeException("UnsupportedFlavorException occured:\n"
-					+ e.getMessage());
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new RuntimeException("IOException occured:\n"
-					+ e.getMessage());
+			List<List<String>> selected = old.getGermans();
+			
+			for(int i = 0; i < germans.length; i++) {
+				if(selected.contains(Arrays.asList(germans[i]))) {
+					popup.addSelected(i);
+				}
+			}
+			
+			popup.setFinalAction(new FinalAction<Collection<Integer>>() {
+
+				@Override
+				public void run(Collection<Integer> param) {
+					if (!param.isEmpty()) {
+						VocabularyCard card = new VocabularyCard(
+								vocab);
+						for (int i : param) {
+							card.addGerman(germans[i]);
+						}
+						box.insert(card);
+					}
+				}
+
+			});
+			
+			display = "'" + vocab
+					+ "' is already in the vocabulary box in case "
+					+ (caseNo + 1);
+			view.displayMessage(null, display, MessageType.INFO);
 		}
+	}
 
+	private static AfterInsertionPopup newPopup(String[][] germans,
+			boolean more) {
+		AfterInsertionPopup p = new AfterInsertionPopup(germans);
+		if (more)
+			p.setTitle("Best " + MAX_TRANSLATIONS
+					+ " translations (more available)");
+		return p;
+	}
+
+	private static boolean containsEntry(List<String[]> entries,
+			List<String> entry) {
+		for (String[] e : entries) {
+			if (Arrays.asList(e).equals(entry))
+				return true;
+		}
+		return false;
 	}
 
 }
@@ -0,0 +1,360 @@
+package model;
+
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and writes the cases of a <tt>VocabularyBox</tt> in the binary .vobo
+ * format. A file consists of
+ *
+ * <ul>
+ * <li>the 4 bytes <tt>MAGIC</tt>, the format version and the generation of
+ * the <tt>Journal</tt> that continues the file (0 if there is none),</li>
+ * <li>the table of all distinct strings of the box, each stored once as its
+ * length and its UTF-8 bytes,</li>
+ * <li>the cases: the number of cards, then for every card the reference of
+ * its vocabulary, the number of translations, every translation as its
+ * number of fields and their references and the schedule of the card: its
+ * due time, interval, ease factor and repetitions.</li>
+ * </ul>
+ *
+ * All numbers except the magic bytes are unsigned varints (7 bits per byte,
+ * least significant group first), so small numbers take a single byte. A
+ * string reference is 0 for null and i + 1 for the i-th string of the table.
+ * Types like "noun" occur in most translations but are stored only once.
+ *
+ * Files are read and written through a buffer of <tt>BUFFER_SIZE</tt> bytes
+ * on a <tt>FileChannel</tt>.
+ *
+ */
+class BoxFile {
+
+	/**
+	 * The first 4 bytes of every file, "VoBo" in ASCII.
+	 */
+	static final int MAGIC = 0x566F426F;
+
+	/**
+	 * The version of the format written by this class.
+	 */
+	static final int VERSION = 3;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** the number of started stores, to name their temporary files */
+	private static final AtomicInteger stores = new AtomicInteger();
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private BoxFile(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * The contents of a file.
+	 */
+	static class Contents {
+		private final List<List<VocabularyCard>> cases;
+		private final int generation;
+
+		private Contents(List<List<VocabularyCard>> cases, int generation) {
+			this.cases = cases;
+			this.generation = generation;
+		}
+
+		/**
+		 * Retrieves the cards of every case in order.
+		 */
+		List<List<VocabularyCard>> getCases() {
+			return cases;
+		}
+
+		/**
+		 * Retrieves the generation of the journal that continues the file.
+		 */
+		int getGeneration() {
+			return generation;
+		}
+	}
+
+	/**
+	 * Stores <tt>cases</tt> in the file <tt>path</tt>. The file is written
+	 * next to <tt>path</tt> and synced first and then moved to <tt>path</tt>,
+	 * so <tt>path</tt> always contains either the old or the new box, even if
+	 * the application crashes while storing. Every call writes its own
+	 * temporary file, so boxes may be stored concurrently.
+	 *
+	 * @param path
+	 *            the path of the file
+	 * @param cases
+	 *            the cards of every case in order
+	 * @param generation
+	 *            the generation of the journal that continues the file
+	 * @throws IOException
+	 */
+	static void store(String path, List<? extends List<VocabularyCard>> cases,
+			int generation) throws IOException {
+		Path tmp = Paths.get(path + "." + stores.incrementAndGet() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp.toFile());
+		try {
+			write(out.getChannel(), cases, generation);
+			out.getChannel().force(true);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp, Paths.get(path), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes <tt>cases</tt> to <tt>channel</tt>.
+	 *
+	 * @param channel
+	 *            the file to write to, positioned at its beginning
+	 * @param cases
+	 *            the cards of every case in order
+	 * @param generation
+	 *            the generation of the journal that continues the file
+	 * @throws IOException
+	 */
+	static void write(FileChannel channel,
+			List<? extends List<VocabularyCard>> cases, int generation)
+			throws IOException {
+		Map<String, Integer> refs = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		for (List<VocabularyCard> c : cases) {
+			for (VocabularyCard card : c) {
+				intern(card.getEnglish(), refs, strings);
+				for (List<String> german : card.getGermans()) {
+					for (String s : german) {
+						intern(s, refs, strings);
+					}
+				}
+			}
+		}
+
+		BoxFile out = new BoxFile(channel);
+		out.buffer.putInt(MAGIC);
+		out.putVarint(VERSION);
+		out.putVarint(generation);
+
+		out.putVarint(strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(UTF8);
+			out.putVarint(bytes.length);
+			out.put(bytes);
+		}
+
+		out.putVarint(cases.size());
+		for (List<VocabularyCard> c : cases) {
+			out.putVarint(c.size());
+			for (VocabularyCard card : c) {
+				out.putVarint(ref(card.getEnglish(), refs));
+				out.putVarint(card.getGermans().size());
+				for (List<String> german : card.getGermans()) {
+					out.putVarint(german.size());
+					for (String s : german) {
+						out.putVarint(ref(s, refs));
+					}
+				}
+				out.putVarlong(card.getDue());
+				out.putVarint(card.getInterval());
+				out.putVarint(card.getEase());
+				out.putVarint(card.getRepetitions());
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads the cases stored in <tt>channel</tt>.
+	 *
+	 * @param channel
+	 *            the file to read from, positioned at its beginning
+	 * @return the contents of the file
+	 * @throws IOException
+	 *             if the file could not be read or is no valid .vobo file
+	 */
+	static Contents read(FileChannel channel)
+			throws IOException {
+		BoxFile in = new BoxFile(channel);
+		in.buffer.flip();
+		in.ensure(4);
+		if (in.buffer.getInt() != MAGIC)
+			throw new IOException("no .vobo file");
+		int version = in.getVarint();
+		if (version < 1 || version > VERSION)
+			throw new IOException("unsupported .vobo version " + version);
+		// version 1 files have no journal
+		int generation = version == 1 ? 0 : in.getVarint();
+
+		String[] strings = new String[in.getVarint() + 1];
+		for (int i = 1; i < strings.length; i++) {
+			strings[i] = new String(in.get(in.getVarint()), UTF8);
+		}
+
+		int caseCount = in.getVarint();
+		if (caseCount == 0)
+			throw new IOException("A VocabularyBox needs cases");
+		List<List<VocabularyCard>> cases = new ArrayList<List<VocabularyCard>>(
+				caseCount);
+		for (int i = 0; i < caseCount; i++) {
+			int cardCount = in.getVarint();
+			List<VocabularyCard> c = new ArrayList<VocabularyCard>(cardCount);
+			for (int j = 0; j < cardCount; j++) {
+				VocabularyCard card = new VocabularyCard(in.getString(strings));
+				int germanCount = in.getVarint();
+				for (int k = 0; k < germanCount; k++) {
+					String[] german = new String[in.getVarint()];
+					for (int l = 0; l < german.length; l++) {
+						german[l] = in.getString(strings);
+					}
+					card.addGerman(german);
+				}
+				// cards of earlier versions are new
+				if (version >= 3)
+					card.schedule(in.getVarlong(), in.getVarint(),
+							in.getVarint(), in.getVarint());
+				c.add(card);
+			}
+			cases.add(c);
+		}
+		return new Contents(cases, generation);
+	}
+
+	/**
+	 * Determines if <tt>header</tt>, the first 4 bytes of a file, belong to a
+	 * .vobo file in this format.
+	 */
+	static boolean matches(int header) {
+		return header == MAGIC;
+	}
+
+	private static void intern(String s, Map<String, Integer> refs,
+			List<String> strings) {
+		if (s != null && !refs.containsKey(s)) {
+			strings.add(s);
+			refs.put(s, strings.size());
+		}
+	}
+
+	private static int ref(String s, Map<String, Integer> refs) {
+		return s == null ? 0 : refs.get(s);
+	}
+
+	private void putVarint(int value) throws IOException {
+		if (buffer.remaining() < 5)
+			flush();
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private void putVarlong(long value) throws IOException {
+		if (buffer.remaining() < 10)
+			flush();
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private void put(byte[] bytes) throws IOException {
+		if (buffer.remaining() < bytes.length) {
+			flush();
+			if (bytes.length > buffer.capacity()) {
+				ByteBuffer large = ByteBuffer.wrap(bytes);
+				while (large.hasRemaining())
+					channel.write(large);
+				return;
+			}
+		}
+		buffer.put(bytes);
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Makes sure that at least <tt>n</tt> bytes, at most
+	 * <tt>BUFFER_SIZE</tt>, are available in the buffer.
+	 */
+	private void ensure(int n) throws IOException {
+		if (buffer.remaining() >= n)
+			return;
+		buffer.compact();
+		while (buffer.position() < n) {
+			if (channel.read(buffer) < 0)
+				throw new EOFException("truncated .vobo file");
+		}
+		buffer.flip();
+	}
+
+	private int getVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			ensure(1);
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				if (value < 0)
+					break;
+				return value;
+			}
+		}
+		throw new IOException("invalid number in .vobo file");
+	}
+
+	private long getVarlong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			ensure(1);
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("invalid number in .vobo file");
+	}
+
+	private byte[] get(int length) throws IOException {
+		byte[] bytes = new byte[length];
+		int done = 0;
+		while (done < length) {
+			ensure(1);
+			int n = Math.min(length - done, buffer.remaining());
+			buffer.get(bytes, done, n);
+			done += n;
+		}
+		return bytes;
+	}
+
+	private String getString(String[] strings) throws IOException {
+		int ref = getVarint();
+		if (ref >= strings.length)
+			throw new IOException("invalid string reference in .vobo file");
+		return strings[ref];
+	}
+}
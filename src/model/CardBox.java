@@ -0,0 +1,274 @@
+package model;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A learning system for vocabularies consisting of (usually) 5 cases, see
+ * <tt>VocabularyBox</tt>. This is what the views and the controller use of
+ * a box, so the cards may be kept in memory by a <tt>VocabularyBox</tt> or
+ * in a sqlite database by a <tt>SQLVocabularyBox</tt>. The operations that
+ * only depend on others are implemented here.
+ *
+ */
+public abstract class CardBox {
+
+	/**
+	 * Retrieves the number of cases this box consists of.
+	 *
+	 * @return The number of cases.
+	 */
+	public abstract int getNumberOfCases();
+
+	/**
+	 * Searches for a vocabulary and returns the number of the containing case
+	 * or -1 if none of the cases contains it.
+	 *
+	 * @param vocab
+	 *            The vocabulary searched for.
+	 * @return The number of the case <tt>vocab</tt> were found in or -1 if
+	 *         <tt>vocab</tt> was not found in any of the cases.
+	 */
+	public int find(String vocab) {
+		return find(new VocabularyCard(vocab));
+	}
+
+	/**
+	 * Searches for a vocabulary and returns the number of the containing case
+	 * or -1 if none of the cases contains it.
+	 *
+	 * @param card
+	 *            The vocabulary searched for.
+	 * @return The number of the case <tt>vocab</tt> were found in or -1 if
+	 *         <tt>vocab</tt> was not found in any of the cases.
+	 */
+	public abstract int find(VocabularyCard card);
+
+	/**
+	 * Searches for a vocabulary in the given case.
+	 *
+	 * @param vocab
+	 *            The vocabulary searched for.
+	 * @param caseNo
+	 *            The number of the case searched in.
+	 * @return true if the given case contains <tt>vocab</tt>, false otherwise
+	 * @throws IllegalArgumentException
+	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 */
+	public boolean find(String vocab, int caseNo) {
+		return find(new VocabularyCard(vocab), caseNo);
+	}
+
+	/**
+	 * Searches for a vocabulary in the given case.
+	 *
+	 * @param card
+	 *            The vocabulary searched for.
+	 * @param caseNo
+	 *            The number of the case searched in.
+	 * @return true if the given case contains <tt>vocab</tt>, false otherwise
+	 * @throws IllegalArgumentException
+	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 */
+	public boolean find(VocabularyCard card, int caseNo) {
+		checkCaseNo(caseNo);
+
+		return find(card) == caseNo;
+	}
+
+	/**
+	 * Removes a vocabulary from the box if it is contained.
+	 *
+	 * @param vocab
+	 *            The vocabulary to remove.
+	 * @return the removed VocabularyCard or null if it was not found.
+	 */
+	public VocabularyCard remove(String vocab) {
+		return remove(new VocabularyCard(vocab));
+	}
+
+	/**
+	 * Removes a vocabulary from the box if it is contained.
+	 *
+	 * @param card
+	 *            The vocabulary to remove.
+	 * @return the removed VocabularyCard or null if it was not found.
+	 */
+	public abstract VocabularyCard remove(VocabularyCard card);
+
+	/**
+	 * Inserts a new vocabulary at the end of case 0 of the box if it is not
+	 * contained in any case.
+	 *
+	 * @param vocab
+	 *            The vocabulary to insert.
+	 * @return true if insertion was successful, false otherwise (probably
+	 *         because <tt>vocab</tt> is already in the box).
+	 */
+	public abstract boolean insert(String vocab);
+
+	/**
+	 * Inserts a new vocabulary at the end of case 0 of the box if it is not
+	 * contained in any case. Otherwise it will be removed from that case, its
+	 * translations will be merged and it will be reinserted into case 0.
+	 *
+	 * @param card
+	 *            The vocabulary to insert
+	 * @return true if insertion or merging and reinsertion respectively was
+	 *         successful, false otherwise
+	 */
+	public abstract boolean insert(VocabularyCard card);
+
+	/**
+	 * Gets the first vocabulary of the given case or null if that case is
+	 * empty. The card may be edited in place, e.g. its translations.
+	 *
+	 * @param caseNo
+	 *            The number of the case the vocabulary is taken from.
+	 * @return The first vocabulary in the case with the number caseNo or null
+	 *         if that case is empty.
+	 * @throws IllegalArgumentException
+	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 */
+	public abstract VocabularyCard getNextVocabInCase(int caseNo);
+
+	/**
+	 * Answers the vocabulary got by getNextVocabInCase(). Answering means it is
+	 * removed from the current case and inserted into the next one
+	 * (respectively it stays in the last case since there is no next one) if it
+	 * was answered correctly or it is put back into case 0 if it was answered
+	 * wrong.
+	 *
+	 * @param caseNo
+	 *            The number of the case the answered vocabulary was taken from.
+	 * @param correct
+	 *            Must be true if the answer was correct and false otherwise.
+	 * @throws NoSuchElementException
+	 *             if the given case is empty.
+	 * @throws IllegalArgumentException
+	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 */
+	public abstract void answerVocabInCase(int caseNo, boolean correct);
+
+	/**
+	 * Similar to answerVocabInCase() but only applicable for case 0.
+	 * If the answer is not correct, the card is at most <tt>limit<tt>
+	 * positions put back instead of put back to the end.
+	 *
+	 * @param limit
+	 * 			Maximum number of positions the card is put back.
+	 * @param correct
+	 * 			Must be true if the answer was correct and false otherwise.
+	 * @throws IllegalArgumentException
+	 * 			if <tt>limit<tt> is negative.
+	 */
+	public abstract void answerVocabInCaseZeroWithLimit(int limit,
+			boolean correct);
+
+	/**
+	 * Gets the card that is due first, regardless of its case.
+	 *
+	 * @return The card with the earliest due time or null if the box is
+	 *         empty.
+	 */
+	public abstract VocabularyCard getNextDueVocab();
+
+	/**
+	 * Gets the cards that are due at a given time in order of their due
+	 * times, regardless of their cases.
+	 *
+	 * @param until
+	 *            The time in ms since the epoch the cards are due at.
+	 * @param limit
+	 *            The maximum number of cards to return.
+	 * @return The first <tt>limit</tt> cards due at <tt>until</tt>.
+	 */
+	public abstract List<VocabularyCard> getDueVocabs(long until, int limit);
+
+	/**
+	 * Gets the cards that are due today in order of their due times, i.e.
+	 * the review queue of today.
+	 *
+	 * @param limit
+	 *            The maximum number of cards to return.
+	 * @return The first <tt>limit</tt> cards due before tomorrow.
+	 */
+	public List<VocabularyCard> getVocabsDueToday(int limit) {
+		return getDueVocabs(
+				Scheduler.endOfDay(System.currentTimeMillis()) - 1, limit);
+	}
+
+	/**
+	 * Reviews a card: its next due time is scheduled by the quality of the
+	 * answer (see <tt>Scheduler</tt>), and like an answer it is put into the
+	 * next case if it was known or back into case 0 otherwise.
+	 *
+	 * @param card
+	 *            The reviewed vocabulary.
+	 * @param quality
+	 *            The quality of the answer, from 0 (not known at all) to 5
+	 *            (known perfectly). 3 or more means it was known.
+	 * @throws NoSuchElementException
+	 *             if the box does not contain <tt>card</tt>.
+	 * @throws IllegalArgumentException
+	 *             if <tt>quality</tt> is not in [0,5].
+	 */
+	public abstract void reviewVocab(VocabularyCard card, int quality);
+
+	/**
+	 * Shuffles a case due to learning the vocabularies themselves instead of
+	 * their sequence.
+	 *
+	 * @param caseNo
+	 *            The number of the case to be shuffled.
+	 * @throws IllegalArgumentException
+	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 */
+	public abstract void shuffleCase(int caseNo);
+
+	/**
+	 * Retrieves an array indicating the amount of vocabularies in each case.
+	 *
+	 * @return An array indicating the amount of vocabularies in each case.
+	 */
+	public abstract int[] getCaseVolumes();
+
+	/**
+	 * Retrieves the total amount of all vocabularies in this box.
+	 *
+	 * @return The total amount of vocabularies.
+	 */
+	public int getVolume() {
+		int res = 0;
+		for (int volume : getCaseVolumes()) {
+			res += volume;
+		}
+
+		return res;
+	}
+
+	/**
+	 * Stores the box into the given path in the format of <tt>BoxFile</tt>,
+	 * so it can be loaded by <tt>VocabularyBox.loadFromFile</tt>.
+	 *
+	 * @param path
+	 *            Path to the file where to store the box in.
+	 * @throws FileNotFoundException
+	 *             if the given file does not exist
+	 */
+	public abstract void storeInFile(String path) throws FileNotFoundException;
+
+	/**
+	 * Retrieves copies of the cards of every case in order, as they are when
+	 * the method is called.
+	 */
+	abstract List<List<VocabularyCard>> getCases();
+
+	void checkCaseNo(int caseNo) {
+		if (caseNo < 0 || caseNo >= getNumberOfCases())
+			throw new IllegalArgumentException(
+					"Invalid case number! Must be between 0 and "
+							+ (getNumberOfCases() - 1));
+	}
+}
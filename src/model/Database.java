@@ -0,0 +1,109 @@
+package model;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An open database, i.e. its writer connection and, in WAL mode, its pool of
+ * readers. A Database never changes; <tt>SQLManager</tt> switches databases by
+ * replacing its Database with a new one.
+ *
+ * A Database is reference counted. Every search retains the Database it runs
+ * on and releases it afterwards, and the owner holds one more reference that
+ * it releases when it retires the Database. The connections are closed when
+ * the last reference is released, so searches started before a switch finish
+ * on the old database while new searches already use the new one.
+ *
+ */
+class Database {
+
+	private final String path;
+	private final StatementCache writer;
+	private final ReaderPool readers;
+
+	/** the number of references, 0 once the connections are closed */
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	/**
+	 * Creates a new Database from opened connections. The caller holds the
+	 * only reference to it.
+	 *
+	 * @param path
+	 *            path to the database file
+	 * @param writer
+	 *            the writer connection
+	 * @param readers
+	 *            the pool of read-only connections, null if all searches use
+	 *            the writer connection
+	 */
+	Database(String path, StatementCache writer, ReaderPool readers) {
+		this.path = path;
+		this.writer = writer;
+		this.readers = readers;
+	}
+
+	/**
+	 * Retrieves the path to the database file.
+	 *
+	 * @return path to the database
+	 */
+	String getPath() {
+		return path;
+	}
+
+	/**
+	 * Retrieves the writer connection. It must only be used by the owner.
+	 *
+	 * @return the writer connection
+	 */
+	StatementCache getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Retrieves the pool of read-only connections.
+	 *
+	 * @return the pool of readers, null if there is none
+	 */
+	ReaderPool getReaders() {
+		return readers;
+	}
+
+	/**
+	 * Adds a reference to this Database unless it has already been closed.
+	 *
+	 * @return true if the reference was added and has to be released, false
+	 *         if the Database is closed
+	 */
+	boolean retain() {
+		while (true) {
+			int n = references.get();
+			if (n == 0)
+				return false;
+			if (references.compareAndSet(n, n + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Releases a reference to this Database. Releasing the last reference
+	 * closes all connections.
+	 *
+	 * @throws SQLException
+	 *             if a connection could not be closed
+	 */
+	void release() throws SQLException {
+		int n = references.decrementAndGet();
+		if (n < 0)
+			throw new IllegalStateException("Database released too often");
+		if (n > 0)
+			return;
+
+		try {
+			if (readers != null)
+				readers.close();
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A dictionary update read from a delta file. A delta file is UTF-8 encoded
+ * and starts with the line
+ *
+ * <pre>
+ * #delta &lt;base&gt; &lt;version&gt;
+ * </pre>
+ *
+ * where <tt>base</tt> is the version of the dictionary the delta applies to
+ * (0 for a dictionary no delta has been applied to) and <tt>version</tt> the
+ * version after applying it. Every following line is an entry like in the
+ * dumps read by <tt>DictionaryImporter</tt>, prefixed with '+' and a '\t' for
+ * an added entry or with '-' and a '\t' for a removed entry. Empty lines and
+ * other lines beginning with '#' are ignored.
+ *
+ */
+class Delta {
+
+	private static final String HEADER = "#delta";
+
+	private final int base;
+	private final int version;
+	private final List<String[]> added = new ArrayList<String[]>();
+	private final List<String[]> removed = new ArrayList<String[]>();
+
+	private Delta(int base, int version) {
+		this.base = base;
+		this.version = version;
+	}
+
+	/**
+	 * Reads the delta file given by <tt>path</tt>.
+	 *
+	 * @param path
+	 *            path to the delta file
+	 * @return the delta stored in the file
+	 * @throws IOException
+	 *             if the file could not be read or is no valid delta file
+	 */
+	static Delta read(String path) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(path), "UTF-8"));
+		try {
+			String line = in.readLine();
+			String[] header = line == null ? new String[0] : line.trim()
+					.split("\\s+");
+			if (header.length != 3 || !header[0].equals(HEADER))
+				throw new IOException(path + " is no delta file");
+
+			Delta delta;
+			try {
+				delta = new Delta(Integer.parseInt(header[1]),
+						Integer.parseInt(header[2]));
+			} catch (NumberFormatException e) {
+				throw new IOException(path + " has an invalid version: "
+						+ e.getMessage());
+			}
+			if (delta.base < 0 || delta.version <= delta.base)
+				throw new IOException(path + " must update to a version after "
+						+ delta.base);
+
+			int number = 1;
+			while ((line = in.readLine()) != null) {
+				number++;
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				String[] fields = line.split("\t", -1);
+				if (fields.length < 3 || fields.length > 4
+						|| fields[1].isEmpty() || fields[2].isEmpty())
+					throw new IOException("line " + number + " of " + path
+							+ " is no entry");
+				String[] entry = { fields[1], fields[2],
+						fields.length == 4 ? fields[3] : "" };
+
+				if (fields[0].equals("+"))
+					delta.added.add(entry);
+				else if (fields[0].equals("-"))
+					delta.removed.add(entry);
+				else
+					throw new IOException("line " + number + " of " + path
+							+ " is neither added nor removed");
+			}
+			return delta;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Retrieves the version of the dictionary the delta applies to.
+	 *
+	 * @return the version before the update
+	 */
+	int getBase() {
+		return base;
+	}
+
+	/**
+	 * Retrieves the version of the dictionary after applying the delta.
+	 *
+	 * @return the version after the update
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Retrieves the added entries.
+	 *
+	 * @return String triples {english, german, type}
+	 */
+	List<String[]> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Retrieves the removed entries.
+	 *
+	 * @return String triples {english, german, type}
+	 */
+	List<String[]> getRemoved() {
+		return removed;
+	}
+}
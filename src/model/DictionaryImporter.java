@@ -0,0 +1,419 @@
+package model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports tab separated dictionary dumps (e.g. dict.cc exports) into the
+ * EnglishGerman table. The file is read through memory mapped buffers and
+ * parsed on a separate thread while the calling thread writes the parsed rows
+ * with JDBC batches and commits every <tt>COMMIT_INTERVAL</tt> rows. The files
+ * must be UTF-8 encoded.
+ *
+ * The ids of the new entries are assigned by the importer, so the trigram and
+ * lemma indexes can be written in the same batches as the entries.
+ *
+ * Entries that are already stored are recognized by their content hash and
+ * skipped, so the same file can be imported again without duplicating any
+ * entry. The update counts of a batch tell which rows were skipped; those
+ * rows are compared with the stored entry of the same hash, and a different
+ * entry, i.e. a hash collision, is reported to the <tt>ImportListener</tt>.
+ * Skipped rows leave gaps in the ids of a batch, but the sequence of the
+ * table is set back to the highest id used, so importing a file again does
+ * not use up ids.
+ *
+ */
+class DictionaryImporter {
+
+	/**
+	 * The number of rows written with one JDBC batch.
+	 */
+	static final int BATCH_SIZE = 1000;
+
+	/**
+	 * The number of rows after which the transaction is committed.
+	 */
+	static final int COMMIT_INTERVAL = 100000;
+
+	/**
+	 * The number of pages SQLite may cache during an import. The trigram
+	 * indexes are written in random order, so a large cache saves most of the
+	 * page reads.
+	 */
+	private static final int CACHE_PAGES = 100000;
+
+	private static final long MAP_SIZE = 64L << 20;
+	private static final int QUEUE_SIZE = 16;
+	private static final String[][] END = new String[0][];
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String insertSql = "INSERT OR IGNORE INTO EnglishGerman (id,english,german,type,englishRank,germanRank,hash) VALUES(?,?,?,?,?,?,?)";
+	private static final String selectByHashSql = "SELECT english, german, type FROM EnglishGerman WHERE hash = ?";
+	private static final String sequenceSql = "UPDATE sqlite_sequence SET seq = ? WHERE name = 'EnglishGerman'";
+	private static final String maxIdSql = "SELECT max(id) FROM (SELECT seq AS id FROM sqlite_sequence WHERE name = 'EnglishGerman'"
+			+ " UNION ALL SELECT max(id) AS id FROM EnglishGerman)";
+
+	private final StatementCache statements;
+	private final NGramIndex englishIndex;
+	private final NGramIndex germanIndex;
+	private final LemmaIndex englishLemma;
+	private final LemmaIndex germanLemma;
+	private final ImportListener listener;
+
+	/**
+	 * Creates a new DictionaryImporter writing to the connection of
+	 * <tt>statements</tt>.
+	 *
+	 * @param statements
+	 *            the writer connection
+	 * @param englishIndex
+	 *            the trigram index of the english column
+	 * @param germanIndex
+	 *            the trigram index of the german column
+	 * @param englishLemma
+	 *            the lemma index of the english column
+	 * @param germanLemma
+	 *            the lemma index of the german column
+	 * @param listener
+	 *            is told about the progress of imports, may be null
+	 */
+	DictionaryImporter(StatementCache statements, NGramIndex englishIndex,
+			NGramIndex germanIndex, LemmaIndex englishLemma,
+			LemmaIndex germanLemma, ImportListener listener) {
+		this.statements = statements;
+		this.englishIndex = englishIndex;
+		this.germanIndex = germanIndex;
+		this.englishLemma = englishLemma;
+		this.germanLemma = germanLemma;
+		this.listener = listener;
+	}
+
+	/**
+	 * Imports all entries of the file opened as <tt>channel</tt> that are not
+	 * stored yet. Every <tt>COMMIT_INTERVAL</tt> rows are committed, so if the
+	 * import fails, the rows committed before stay in the database.
+	 *
+	 * @param channel
+	 *            the file to import
+	 * @return the number of inserted entries, not counting skipped ones
+	 * @throws IOException
+	 *             if the file could not be read
+	 * @throws SQLException
+	 *             if the entries could not be written
+	 */
+	int importFile(FileChannel channel) throws IOException, SQLException {
+		long start = System.nanoTime();
+
+		Parser parser = new Parser(channel);
+		Thread thread = new Thread(parser, "DictionaryImporter");
+		thread.setDaemon(true);
+		thread.start();
+
+		Connection connection = statements.getConnection();
+		int cachePages = pragma(connection, "cache_size");
+		setPragma(connection, "cache_size", CACHE_PAGES);
+		connection.setAutoCommit(false);
+		int counter = 0;
+		int inserted = 0;
+		int collisions = 0;
+		boolean success = false;
+		try {
+			long id = maxId();
+			// the highest id used, skipped rows advance the sequence anyway
+			long used = id;
+			PreparedStatement insert = statements.prepare(insertSql);
+			PreparedStatement englishGrams = statements.prepare(englishIndex
+					.insertSql());
+			PreparedStatement germanGrams = statements.prepare(germanIndex
+					.insertSql());
+			PreparedStatement englishForms = statements.prepare(englishLemma
+					.insertSql());
+			PreparedStatement germanForms = statements.prepare(germanLemma
+					.insertSql());
+
+			String[][] batch;
+			while ((batch = parser.take()) != END) {
+				for (int i = 0; i < batch.length; i++) {
+					String[] row = batch[i];
+					insert.setLong(1, id + 1 + i);
+					insert.setString(2, row[0]);
+					insert.setString(3, row[1]);
+					insert.setString(4, row[2]);
+					insert.setInt(5, SQLManager.englishRank(row[0], row[1],
+							row[2]));
+					insert.setInt(6, SQLManager.germanRank(row[0], row[1]));
+					insert.setLong(7, SQLManager.contentHash(row[0], row[1],
+							row[2]));
+					insert.addBatch();
+				}
+				int[] counts = insert.executeBatch();
+
+				for (int i = 0; i < batch.length; i++) {
+					String[] row = batch[i];
+					if (counts[i] == 0) {
+						if (collides(row)) {
+							collisions++;
+							if (listener != null)
+								listener.collision(row[0], row[1], row[2]);
+						}
+						continue;
+					}
+
+					inserted++;
+					used = id + 1 + i;
+					englishIndex.add(englishGrams, id + 1 + i, row[0]);
+					germanIndex.add(germanGrams, id + 1 + i, row[1]);
+					englishLemma.add(englishForms, id + 1 + i, row[0], row[2]);
+					germanLemma.add(germanForms, id + 1 + i, row[1], row[2]);
+				}
+				id += batch.length;
+				englishGrams.executeBatch();
+				germanGrams.executeBatch();
+				englishForms.executeBatch();
+				germanForms.executeBatch();
+
+				int before = counter;
+				counter += batch.length;
+				if (before / COMMIT_INTERVAL != counter / COMMIT_INTERVAL) {
+					setSequence(used);
+					connection.commit();
+					if (listener != null)
+						listener.progress(counter, inserted);
+				}
+			}
+
+			Throwable failure = parser.failure;
+			if (failure instanceof IOException)
+				throw (IOException) failure;
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+			setSequence(used);
+			connection.commit();
+			success = true;
+		} finally {
+			if (!success) {
+				parser.cancel();
+				connection.rollback();
+			}
+			connection.setAutoCommit(true);
+			setPragma(connection, "cache_size", cachePages);
+		}
+
+		if (listener != null)
+			listener.finished(counter, inserted, collisions,
+					(System.nanoTime() - start) / 1000000);
+
+		return inserted;
+	}
+
+	/**
+	 * Retrieves the integer value of the pragma <tt>name</tt>.
+	 */
+	static int pragma(Connection c, String name) throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("PRAGMA " + name);
+			rs.next();
+			int value = rs.getInt(1);
+			rs.close();
+			return value;
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Sets the pragma <tt>name</tt> to <tt>value</tt>.
+	 */
+	static void setPragma(Connection c, String name, int value)
+			throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			stmt.executeUpdate("PRAGMA " + name + " = " + value);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Determines if the entry stored with the hash of <tt>row</tt> differs
+	 * from <tt>row</tt>.
+	 */
+	private boolean collides(String[] row) throws SQLException {
+		PreparedStatement stmt = statements.prepare(selectByHashSql);
+		stmt.setLong(1, SQLManager.contentHash(row[0], row[1], row[2]));
+		ResultSet rs = stmt.executeQuery();
+		try {
+			// only skipped rows are looked up, so the entry exists
+			return rs.next()
+					&& !(row[0].equals(rs.getString(1))
+							&& row[1].equals(rs.getString(2)) && row[2]
+								.equals(rs.getString(3)));
+		} finally {
+			rs.close();
+		}
+	}
+
+	private void setSequence(long seq) throws SQLException {
+		PreparedStatement stmt = statements.prepare(sequenceSql);
+		stmt.setLong(1, seq);
+		stmt.executeUpdate();
+	}
+
+	private long maxId() throws SQLException {
+		ResultSet rs = statements.prepare(maxIdSql).executeQuery();
+		try {
+			rs.next();
+			return rs.getLong(1);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Reads the file region by region and hands the parsed rows in batches of
+	 * <tt>BATCH_SIZE</tt> over to the writing thread.
+	 */
+	private static class Parser implements Runnable {
+
+		private final FileChannel channel;
+		private final BlockingQueue<String[][]> queue = new ArrayBlockingQueue<String[][]>(
+				QUEUE_SIZE);
+		private volatile boolean cancelled = false;
+		/** the exception that stopped the parser, set before <tt>END</tt> is put */
+		private volatile Throwable failure = null;
+
+		private byte[] line = new byte[256];
+		private String[][] batch = new String[BATCH_SIZE][];
+		private int batchSize = 0;
+
+		Parser(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		String[][] take() {
+			try {
+				return queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("InterruptedException occured:\n"
+						+ e.getMessage());
+			}
+		}
+
+		void cancel() {
+			cancelled = true;
+			queue.clear();
+		}
+
+		@Override
+		public void run() {
+			try {
+				long size = channel.size();
+				long position = 0;
+				while (position < size && !cancelled) {
+					long length = Math.min(MAP_SIZE, size - position);
+					MappedByteBuffer buffer = channel.map(
+							FileChannel.MapMode.READ_ONLY, position, length);
+					boolean last = position + length == size;
+
+					int begin = 0;
+					int end = (int) length;
+					if (!last) {
+						while (end > 0 && buffer.get(end - 1) != '\n')
+							end--;
+						if (end == 0)
+							throw new IOException("line at position "
+									+ position + " is too long");
+					}
+
+					for (int i = 0; i < end; i++) {
+						if (buffer.get(i) == '\n') {
+							parseLine(buffer, begin, i);
+							begin = i + 1;
+						}
+					}
+					if (begin < end)
+						parseLine(buffer, begin, end);
+
+					position += end;
+				}
+				flush();
+			} catch (Throwable e) {
+				// rethrown by the writing thread, so a partly parsed file
+				// is rolled back instead of committed
+				failure = e;
+			} finally {
+				put(END);
+			}
+		}
+
+		private void parseLine(MappedByteBuffer buffer, int begin, int end) {
+			int length = end - begin;
+			if (length > 0 && buffer.get(end - 1) == '\r')
+				length--;
+			if (length == 0 || buffer.get(begin) == '#')
+				return;
+
+			if (line.length < length)
+				line = new byte[Math.max(length, 2 * line.length)];
+			buffer.position(begin);
+			buffer.get(line, 0, length);
+
+			// same as StringTokenizer: empty fields are skipped
+			String[] row = new String[] { null, null, "" };
+			int field = 0;
+			int from = 0;
+			for (int i = 0; i <= length && field < 3; i++) {
+				if (i == length || line[i] == '\t') {
+					if (i > from)
+						row[field++] = new String(line, from, i - from, UTF8);
+					from = i + 1;
+				}
+			}
+			if (field < 2)
+				return;
+
+			batch[batchSize++] = row;
+			if (batchSize == BATCH_SIZE)
+				flush();
+		}
+
+		private void flush() {
+			if (batchSize == 0)
+				return;
+
+			String[][] full = batch;
+			if (batchSize < BATCH_SIZE) {
+				full = new String[batchSize][];
+				System.arraycopy(batch, 0, full, 0, batchSize);
+			}
+			put(full);
+			batch = new String[BATCH_SIZE][];
+			batchSize = 0;
+		}
+
+		private void put(String[][] rows) {
+			try {
+				while (!cancelled
+						&& !queue.offer(rows, 100, TimeUnit.MILLISECONDS))
+					;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancelled = true;
+			}
+		}
+	}
+}
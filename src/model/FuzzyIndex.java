@@ -0,0 +1,405 @@
+package model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A typo-tolerant index over the distinct values of one column of the
+ * EnglishGerman table. It finds all values within a small edit distance of a
+ * search term, ignoring case.
+ *
+ * The values are packed into a single char array and sorted ignoring case, so
+ * the sorted array can be walked like a trie: all values with a common prefix
+ * form a contiguous range. A search walks this trie depth first and computes
+ * one row of the edit distance matrix per character of the prefix. As soon as
+ * every cell of a row exceeds the maximum distance, no value below the prefix
+ * can match and the whole range is skipped. That way a search with distance 2
+ * only visits a tiny fraction of the values.
+ *
+ * The distance is the optimal string alignment distance, i.e. the Levenshtein
+ * distance that also counts swapping two adjacent characters as one edit.
+ *
+ * The sorted values also answer prefix searches for autocompletion with a
+ * binary search. Every value has the best rank of its entries, and a segment
+ * tree over the ranks finds the best value of any range, so the best
+ * <tt>k</tt> values with a prefix are found in time in <tt>k</tt> and the
+ * logarithm of the number of values, however many values have the prefix.
+ *
+ * Memory use is roughly 2 bytes per character of all distinct values plus 16
+ * bytes per value.
+ *
+ */
+class FuzzyIndex {
+
+	/**
+	 * The largest supported edit distance. The number of visited prefixes
+	 * grows quickly with the distance, so larger distances are not useful for
+	 * interactive lookups.
+	 */
+	static final int MAX_DISTANCE = 2;
+
+	private final char[] chars;
+	private final int[] start;
+	private final int size;
+	/** the best rank of the entries of every value */
+	private final int[] rank;
+	/**
+	 * The segment tree of the best values, <tt>tree[size + i]</tt> is value
+	 * <tt>i</tt> and <tt>tree[i]</tt> the better value of its two children.
+	 */
+	private final int[] tree;
+
+	private FuzzyIndex(char[] chars, int[] start, int size, int[] rank) {
+		this.chars = chars;
+		this.start = start;
+		this.size = size;
+		this.rank = rank;
+
+		tree = new int[2 * size];
+		for (int i = 0; i < size; i++) {
+			tree[size + i] = i;
+		}
+		for (int i = size - 1; i > 0; i--) {
+			tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+		}
+	}
+
+	/**
+	 * Builds the index over all distinct values of <tt>column</tt>.
+	 *
+	 * @param statements
+	 *            the connection to read the values from
+	 * @param column
+	 *            name of the indexed column of EnglishGerman
+	 * @param rankColumn
+	 *            name of the column of EnglishGerman ranking the entries for
+	 *            searches of <tt>column</tt>
+	 * @return the new index
+	 * @throws SQLException
+	 */
+	static FuzzyIndex build(StatementCache statements, String column,
+			String rankColumn) throws SQLException {
+		final ArrayList<String> values = new ArrayList<String>();
+		ArrayList<Integer> ranks = new ArrayList<Integer>();
+		ResultSet rs = statements.prepare(
+				"SELECT " + column + ", min(" + rankColumn
+						+ ") FROM EnglishGerman GROUP BY " + column)
+				.executeQuery();
+		try {
+			while (rs.next()) {
+				String value = rs.getString(1);
+				if (value != null) {
+					values.add(value);
+					ranks.add(rs.getInt(2));
+				}
+			}
+		} finally {
+			rs.close();
+		}
+
+		Integer[] order = new Integer[values.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer x, Integer y) {
+				String a = values.get(x);
+				String b = values.get(y);
+				int n = Math.min(a.length(), b.length());
+				for (int i = 0; i < n; i++) {
+					char ca = Character.toLowerCase(a.charAt(i));
+					char cb = Character.toLowerCase(b.charAt(i));
+					if (ca != cb)
+						return ca - cb;
+				}
+				if (a.length() != b.length())
+					return a.length() - b.length();
+				return a.compareTo(b);
+			}
+
+		});
+
+		long length = 0;
+		for (String s : values) {
+			length += s.length();
+		}
+		if (length > Integer.MAX_VALUE)
+			throw new SQLException("The column " + column
+					+ " is too large for a fuzzy index");
+
+		char[] chars = new char[(int) length];
+		int[] start = new int[order.length + 1];
+		int[] rank = new int[order.length];
+		int pos = 0;
+		for (int i = 0; i < order.length; i++) {
+			String value = values.get(order[i]);
+			start[i] = pos;
+			value.getChars(0, value.length(), chars, pos);
+			pos += value.length();
+			rank[i] = ranks.get(order[i]);
+		}
+		start[order.length] = pos;
+
+		return new FuzzyIndex(chars, start, order.length, rank);
+	}
+
+	/**
+	 * Retrieves the number of indexed values.
+	 *
+	 * @return the number of distinct values
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Searches for all values within <tt>maxDistance</tt> edits of
+	 * <tt>term</tt>, ignoring case.
+	 *
+	 * @param term
+	 *            the search term
+	 * @param maxDistance
+	 *            the maximum edit distance, between 0 and
+	 *            <tt>MAX_DISTANCE</tt>
+	 * @return the matching values, closest first
+	 */
+	LinkedList<String> search(String term, int maxDistance) {
+		if (maxDistance < 0 || maxDistance > MAX_DISTANCE)
+			throw new IllegalArgumentException(
+					"The distance must be between 0 and " + MAX_DISTANCE + "!");
+
+		char[] t = new char[term.length()];
+		for (int i = 0; i < t.length; i++) {
+			t[i] = Character.toLowerCase(term.charAt(i));
+		}
+
+		Search search = new Search(t, maxDistance);
+		for (int j = 0; j <= t.length; j++) {
+			search.rows[0][j] = j;
+		}
+		search.walk(0, size, 0);
+
+		LinkedList<String> res = new LinkedList<String>();
+		for (List<String> matches : search.matches) {
+			res.addAll(matches);
+		}
+		return res;
+	}
+
+	/**
+	 * Retrieves the best <tt>k</tt> values that start with <tt>prefix</tt>,
+	 * ignoring case. A value is as good as the best ranked of its entries.
+	 *
+	 * @param prefix
+	 *            the beginning of the values
+	 * @param k
+	 *            the maximum number of values
+	 * @return the values starting with <tt>prefix</tt> in the order of their
+	 *         rank, values of the same rank in alphabetical order
+	 */
+	LinkedList<String> complete(String prefix, int k) {
+		char[] p = new char[prefix.length()];
+		for (int i = 0; i < p.length; i++) {
+			p[i] = Character.toLowerCase(prefix.charAt(i));
+		}
+
+		// the first value not less than the prefix
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(mid, p) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		// the first value not starting with the prefix
+		int end = lo;
+		hi = size;
+		while (end < hi) {
+			int mid = (end + hi) >>> 1;
+			if (startsWith(mid, p))
+				end = mid + 1;
+			else
+				hi = mid;
+		}
+
+		// ranges {from, to, best value}, the range with the best value first
+		PriorityQueue<int[]> ranges = new PriorityQueue<int[]>(11,
+				new Comparator<int[]>() {
+
+					@Override
+					public int compare(int[] a, int[] b) {
+						return better(a[2], b[2]) == a[2] ? -1 : 1;
+					}
+
+				});
+		LinkedList<String> res = new LinkedList<String>();
+		if (lo < end)
+			ranges.add(new int[] { lo, end, best(lo, end) });
+		while (res.size() < k && !ranges.isEmpty()) {
+			int[] range = ranges.poll();
+			int value = range[2];
+			res.add(new String(chars, start[value], length(value)));
+			if (range[0] < value)
+				ranges.add(new int[] { range[0], value, best(range[0], value) });
+			if (value + 1 < range[1])
+				ranges.add(new int[] { value + 1, range[1],
+						best(value + 1, range[1]) });
+		}
+		return res;
+	}
+
+	/**
+	 * Retrieves the best value from <tt>from</tt> (inclusive) to <tt>to</tt>
+	 * (exclusive), which must not be empty.
+	 */
+	private int best(int from, int to) {
+		int res = -1;
+		for (from += size, to += size; from < to; from >>= 1, to >>= 1) {
+			if ((from & 1) == 1)
+				res = better(res, tree[from++]);
+			if ((to & 1) == 1)
+				res = better(res, tree[--to]);
+		}
+		return res;
+	}
+
+	/**
+	 * Retrieves the value of lower rank, or the first one in the sort order
+	 * if both have the same rank. -1 stands for no value.
+	 */
+	private int better(int a, int b) {
+		if (a < 0)
+			return b;
+		if (b < 0 || rank[a] < rank[b] || rank[a] == rank[b] && a < b)
+			return a;
+		return b;
+	}
+
+	/**
+	 * Compares the folded value to <tt>p</tt> like the sort order does.
+	 */
+	private int compare(int value, char[] p) {
+		int n = Math.min(length(value), p.length);
+		for (int i = 0; i < n; i++) {
+			char c = charAt(value, i);
+			if (c != p[i])
+				return c - p[i];
+		}
+		return length(value) - p.length;
+	}
+
+	private boolean startsWith(int value, char[] p) {
+		if (length(value) < p.length)
+			return false;
+		for (int i = 0; i < p.length; i++) {
+			if (charAt(value, i) != p[i])
+				return false;
+		}
+		return true;
+	}
+
+	private int length(int value) {
+		return start[value + 1] - start[value];
+	}
+
+	private char charAt(int value, int i) {
+		return Character.toLowerCase(chars[start[value] + i]);
+	}
+
+	/**
+	 * The state of a single search. <tt>rows[d]</tt> is the row of the
+	 * distance matrix for the current prefix of length <tt>d</tt>, whose
+	 * characters are in <tt>path</tt>.
+	 */
+	private class Search {
+		private final char[] term;
+		private final int maxDistance;
+		private final int[][] rows;
+		private final char[] path;
+		private final List<List<String>> matches;
+
+		Search(char[] term, int maxDistance) {
+			this.term = term;
+			this.maxDistance = maxDistance;
+			rows = new int[term.length + maxDistance + 1][term.length + 1];
+			path = new char[term.length + maxDistance];
+			matches = new ArrayList<List<String>>(maxDistance + 1);
+			for (int i = 0; i <= maxDistance; i++) {
+				matches.add(new ArrayList<String>());
+			}
+		}
+
+		/**
+		 * Walks the values <tt>from</tt> (inclusive) to <tt>to</tt>
+		 * (exclusive), which share the prefix of length <tt>depth</tt>.
+		 */
+		void walk(int from, int to, int depth) {
+			int[] row = rows[depth];
+			int m = term.length;
+
+			// the values equal to the prefix come first
+			while (from < to && length(from) == depth) {
+				if (row[m] <= maxDistance)
+					matches.get(row[m]).add(
+							new String(chars, start[from], depth));
+				from++;
+			}
+			// longer values are too far away from the term
+			if (depth == m + maxDistance)
+				return;
+
+			int[] next = rows[depth + 1];
+			while (from < to) {
+				char c = charAt(from, depth);
+				int end = runEnd(from, to, depth, c);
+
+				next[0] = depth + 1;
+				int min = next[0];
+				for (int j = 1; j <= m; j++) {
+					int d = Math.min(row[j] + 1, next[j - 1] + 1);
+					d = Math.min(d, row[j - 1] + (term[j - 1] == c ? 0 : 1));
+					if (depth > 0 && j > 1 && term[j - 1] == path[depth - 1]
+							&& term[j - 2] == c)
+						d = Math.min(d, rows[depth - 1][j - 2] + 1);
+					next[j] = d;
+					min = Math.min(min, d);
+				}
+
+				if (min <= maxDistance) {
+					path[depth] = c;
+					walk(from, end, depth + 1);
+				}
+				from = end;
+			}
+		}
+
+		/**
+		 * Finds the end of the values in <tt>from</tt> to <tt>to</tt> whose
+		 * character at <tt>depth</tt> is <tt>c</tt>. All these values are
+		 * longer than <tt>depth</tt>.
+		 */
+		private int runEnd(int from, int to, int depth, char c) {
+			int lo = from + 1;
+			int hi = to;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (charAt(mid, depth) == c)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+	}
+}
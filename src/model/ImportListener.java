@@ -0,0 +1,37 @@
+package model;
+
+import java.util.EventListener;
+
+/**
+ * Instances of this interface can be passed to
+ * <tt>SQLManager.insertEntriesFromFile</tt> to be told about the progress of
+ * an import, e.g. to show it to the user.
+ */
+public interface ImportListener extends EventListener {
+
+	/**
+	 * Method to be invoked, whenever a part of the file has been committed.
+	 * @param rows the number of rows of the file read so far
+	 * @param inserted the number of entries inserted so far
+	 */
+	public void progress(int rows, int inserted);
+
+	/**
+	 * Method to be invoked, when a row of the file was not inserted, because
+	 * a different entry with the same content hash is stored.
+	 * @param english the english column of the row
+	 * @param german the german column of the row
+	 * @param type the type column of the row
+	 */
+	public void collision(String english, String german, String type);
+
+	/**
+	 * Method to be invoked, when the whole file has been committed.
+	 * @param rows the number of rows of the file
+	 * @param inserted the number of inserted entries, the other rows were already stored
+	 * @param collisions the number of rows that were not inserted because of a hash collision
+	 * @param millis the duration of the import in ms
+	 */
+	public void finished(int rows, int inserted, int collisions, long millis);
+
+}
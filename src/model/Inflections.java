@@ -0,0 +1,598 @@
+package model;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the inflected forms of dictionary entries, e.g. "runs", "ran" and
+ * "running" for "to run" or "Häuser" for "Haus". The forms are generated by
+ * the regular rules of English and German and a table of frequent irregular
+ * words. Every form is stored in the lemma index, so the rules only produce
+ * the forms a word can take by its word class and, for German nouns, its
+ * gender and ending. Only nouns, verbs and adjectives are inflected, entries
+ * of other or no type just have their headword, and a consonant is only
+ * doubled when that is certain, as in "stopped" or "bigger".
+ *
+ * Annotations in braces, brackets, angle brackets and parentheses (as in
+ * dict.cc dumps) are removed, except that the gender of a German noun is
+ * taken from "{m}", "{f}", "{n}" or "{pl}". Verbs are inflected on their
+ * first English or last German word, all other entries on their last word.
+ * All forms are lower case.
+ *
+ */
+class Inflections {
+
+	private static final String VOWELS = "aeiou";
+
+	/**
+	 * Endings of German nouns of more than one syllable that are feminine and
+	 * take "-en" in the plural, e.g. "Zeitung", "Lehrerin".
+	 */
+	private static final String[] FEMININE_ENDINGS = { "ung", "heit", "keit",
+			"schaft", "ion", "tät", "ik", "ei", "in" };
+
+	private static final Map<String, String[]> englishNouns = table(
+			"child children", "man men", "woman women", "person people",
+			"mouse mice", "louse lice", "goose geese", "foot feet",
+			"tooth teeth", "ox oxen", "die dice", "penny pence",
+			"criterion criteria", "phenomenon phenomena", "datum data",
+			"medium media", "cactus cacti", "fungus fungi", "nucleus nuclei",
+			"radius radii", "stimulus stimuli", "index indices",
+			"appendix appendices", "matrix matrices", "vertex vertices",
+			"thief thieves", "wife wives", "knife knives", "life lives",
+			"leaf leaves", "half halves", "wolf wolves", "shelf shelves",
+			"calf calves", "loaf loaves", "self selves", "elf elves",
+			"sheep sheep", "fish fish", "deer deer", "series series",
+			"species species", "potato potatoes", "tomato tomatoes",
+			"hero heroes", "echo echoes", "veto vetoes");
+
+	private static final Map<String, String[]> englishVerbs = table(
+			"be am is are was were been being", "have has had having",
+			"do does did done doing", "go goes went gone going",
+			"arise arose arisen", "awake awoke awoken", "bear bore borne born",
+			"beat beaten", "become became", "begin began begun",
+			"bend bent", "bet", "bind bound", "bite bit bitten",
+			"bleed bled", "blow blew blown", "break broke broken",
+			"breed bred", "bring brought", "build built", "burn burnt",
+			"burst", "buy bought", "catch caught", "choose chose chosen",
+			"cling clung", "come came", "cost", "creep crept", "cut",
+			"deal dealt", "dig dug", "draw drew drawn",
+			"dream dreamt", "drink drank drunk", "drive drove driven",
+			"eat ate eaten", "fall fell fallen", "feed fed", "feel felt",
+			"fight fought", "find found", "flee fled", "fly flew flown flies",
+			"forbid forbade forbidden", "forget forgot forgotten",
+			"forgive forgave forgiven", "freeze froze frozen",
+			"get got gotten", "give gave given", "grind ground",
+			"grow grew grown", "hang hung", "hear heard", "hide hid hidden",
+			"hit", "hold held", "hurt", "keep kept", "kneel knelt",
+			"know knew known", "lay laid", "lead led", "lean leant",
+			"leap leapt", "learn learnt", "leave left", "lend lent", "let",
+			"lie lay lain lying", "light lit", "lose lost", "make made",
+			"mean meant", "meet met", "pay paid", "put", "quit", "read",
+			"ride rode ridden", "ring rang rung", "rise rose risen",
+			"run ran", "say said", "see saw seen", "seek sought",
+			"sell sold", "send sent", "set", "sew sewn", "shake shook shaken",
+			"shed", "shine shone", "shoot shot", "show shown", "shrink shrank shrunk",
+			"shut", "sing sang sung", "sink sank sunk", "sit sat",
+			"sleep slept", "slide slid", "smell smelt", "speak spoke spoken",
+			"speed sped", "spell spelt", "spend spent", "spill spilt",
+			"spin spun", "spit spat", "split", "spoil spoilt", "spread",
+			"spring sprang sprung", "stand stood", "steal stole stolen",
+			"stick stuck", "sting stung", "stink stank stunk",
+			"stride strode stridden", "strike struck", "string strung",
+			"strive strove striven", "swear swore sworn", "sweep swept",
+			"swim swam swum", "swing swung", "take took taken",
+			"teach taught", "tear tore torn", "tell told", "think thought",
+			"throw threw thrown", "tread trod trodden",
+			"understand understood", "wake woke woken", "wear wore worn",
+			"weave wove woven", "weep wept", "win won", "wind wound",
+			"withdraw withdrew withdrawn", "write wrote written");
+
+	private static final Map<String, String[]> englishAdjectives = table(
+			"good better best", "well better best", "bad worse worst",
+			"ill worse worst", "far farther further farthest furthest",
+			"little less least", "many more most", "much more most",
+			"old elder eldest");
+
+	private static final Map<String, String[]> germanVerbs = table(
+			"sein bin bist ist sind seid war warst waren wart gewesen",
+			"haben habe hast hat habt hatte hattest hatten hattet gehabt",
+			"werden werde wirst wird werdet wurde wurdest wurden wurdet geworden",
+			"können kann kannst könnt konnte konnten gekonnt",
+			"müssen muss musst müsst musste mussten gemusst",
+			"dürfen darf darfst dürft durfte durften gedurft",
+			"wollen will willst wollt wollte wollten gewollt",
+			"sollen soll sollst sollt sollte sollten gesollt",
+			"mögen mag magst mögt mochte mochten gemocht",
+			"wissen weiß weißt wisst wusste wussten gewusst",
+			"gehen ging gingen gegangen", "stehen stand standen gestanden",
+			"kommen kam kamen gekommen", "sehen sieht siehst sah sahen gesehen",
+			"geben gibt gibst gab gaben gegeben",
+			"nehmen nimmt nimmst nahm nahmen genommen",
+			"essen isst aß aßen gegessen", "trinken trank tranken getrunken",
+			"laufen läuft läufst lief liefen gelaufen",
+			"fahren fährt fährst fuhr fuhren gefahren",
+			"schlafen schläft schläfst schlief schliefen geschlafen",
+			"lesen liest las lasen gelesen",
+			"sprechen spricht sprichst sprach sprachen gesprochen",
+			"helfen hilft hilfst half halfen geholfen",
+			"treffen trifft triffst traf trafen getroffen",
+			"finden fand fanden gefunden", "bleiben blieb blieben geblieben",
+			"schreiben schrieb schrieben geschrieben",
+			"fallen fällt fällst fiel fielen gefallen",
+			"halten hält hältst hielt hielten gehalten",
+			"lassen lässt ließ ließen gelassen",
+			"tragen trägt trägst trug trugen getragen",
+			"waschen wäscht wäschst wusch wuschen gewaschen",
+			"fangen fängt fängst fing fingen gefangen",
+			"liegen lag lagen gelegen", "sitzen saß saßen gesessen",
+			"bringen brachte brachten gebracht",
+			"denken dachte dachten gedacht",
+			"kennen kannte kannten gekannt", "nennen nannte nannten genannt",
+			"rennen rannte rannten gerannt", "tun tue tust tut tat taten getan",
+			"ziehen zog zogen gezogen", "fliegen flog flogen geflogen",
+			"schließen schloss schlossen geschlossen",
+			"beginnen begann begannen begonnen",
+			"gewinnen gewann gewannen gewonnen",
+			"schwimmen schwamm schwammen geschwommen",
+			"singen sang sangen gesungen", "springen sprang sprangen gesprungen",
+			"werfen wirft wirfst warf warfen geworfen",
+			"sterben stirbt stirbst starb starben gestorben",
+			"vergessen vergisst vergaß vergaßen");
+
+	private Inflections() {
+	}
+
+	private static Map<String, String[]> table(String... lines) {
+		Map<String, String[]> res = new HashMap<String, String[]>();
+		for (String line : lines) {
+			String[] words = line.split(" ");
+			res.put(words[0], words);
+		}
+		return res;
+	}
+
+	/**
+	 * Generates the forms of an English entry.
+	 *
+	 * @param english
+	 *            the English column of the entry
+	 * @param type
+	 *            the type of the entry, e.g. "verb", "noun" or "adj"
+	 * @return the entry itself without annotations and all its inflected forms
+	 */
+	static Set<String> english(String english, String type) {
+		Set<String> res = new LinkedHashSet<String>();
+		String head = headword(english);
+		if (head.isEmpty())
+			return res;
+
+		boolean verb = "verb".equals(type);
+		if (verb && head.startsWith("to "))
+			head = head.substring(3);
+		res.add(head);
+
+		int split = verb ? head.indexOf(' ') : head.lastIndexOf(' ');
+		String word;
+		String before = "";
+		String after = "";
+		if (split < 0) {
+			word = head;
+		} else if (verb) {
+			word = head.substring(0, split);
+			after = head.substring(split);
+		} else {
+			word = head.substring(split + 1);
+			before = head.substring(0, split + 1);
+		}
+
+		Set<String> forms = new LinkedHashSet<String>();
+		if (verb)
+			englishVerb(word, forms);
+		else if ("adj".equals(type))
+			englishAdjective(word, forms);
+		else if ("noun".equals(type))
+			englishNoun(word, forms);
+
+		for (String form : forms) {
+			res.add(before + form + after);
+		}
+		return res;
+	}
+
+	/**
+	 * Generates the forms of a German entry.
+	 *
+	 * @param german
+	 *            the German column of the entry
+	 * @param type
+	 *            the type of the entry, e.g. "verb", "noun" or "adj"
+	 * @return the entry itself without annotations and all its inflected forms
+	 */
+	static Set<String> german(String german, String type) {
+		Set<String> res = new LinkedHashSet<String>();
+		String head = headword(german);
+		if (head.startsWith("sich "))
+			head = head.substring(5);
+		if (head.isEmpty())
+			return res;
+		res.add(head);
+
+		int split = head.lastIndexOf(' ');
+		String before = head.substring(0, split + 1);
+		String word = head.substring(split + 1);
+
+		Set<String> forms = new LinkedHashSet<String>();
+		if ("verb".equals(type))
+			germanVerb(word, forms);
+		else if ("adj".equals(type))
+			germanAdjective(word, forms);
+		else if ("noun".equals(type))
+			germanNoun(word, gender(german), forms);
+
+		for (String form : forms) {
+			res.add(before + form);
+		}
+		return res;
+	}
+
+	/**
+	 * Retrieves the gender of a German noun annotated like "Haus {n}".
+	 *
+	 * @return "m", "f", "n", "pl" or null if the noun is not annotated
+	 */
+	private static String gender(String german) {
+		for (int i = german.indexOf('{'); i >= 0; i = german.indexOf('{',
+				i + 1)) {
+			int end = german.indexOf('}', i);
+			if (end < 0)
+				break;
+			String tag = german.substring(i + 1, end).trim();
+			if (tag.equals("m") || tag.equals("f") || tag.equals("n")
+					|| tag.equals("pl"))
+				return tag;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the annotations of an entry, folds it to lower case and
+	 * collapses white space.
+	 */
+	static String headword(String text) {
+		if (text == null)
+			return "";
+
+		StringBuilder sb = new StringBuilder(text.length());
+		int depth = 0;
+		boolean space = true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '{' || c == '[' || c == '<' || c == '(') {
+				depth++;
+			} else if (c == '}' || c == ']' || c == '>' || c == ')') {
+				if (depth > 0)
+					depth--;
+			} else if (depth == 0) {
+				if (Character.isWhitespace(c)) {
+					if (!space)
+						sb.append(' ');
+					space = true;
+				} else {
+					sb.append(Character.toLowerCase(c));
+					space = false;
+				}
+			}
+		}
+		if (space && sb.length() > 0)
+			sb.setLength(sb.length() - 1);
+		return sb.toString();
+	}
+
+	private static void englishNoun(String w, Set<String> forms) {
+		String[] irregular = englishNouns.get(w);
+		if (irregular != null) {
+			add(forms, irregular);
+			return;
+		}
+		forms.add(sForm(w));
+	}
+
+	private static void englishVerb(String w, Set<String> forms) {
+		String[] irregular = englishVerbs.get(w);
+		if (irregular != null)
+			add(forms, irregular);
+
+		forms.add(sForm(w));
+		// "stop" always doubles, "visit" does not, "begin" does
+		boolean doubles = shortSyllable(w);
+		boolean single = !doubles || syllables(w) > 1;
+		String doubled = w + w.charAt(w.length() - 1);
+		if (w.endsWith("ie")) {
+			forms.add(w.substring(0, w.length() - 2) + "ying");
+		} else if (w.endsWith("e") && !w.endsWith("ee") && !w.endsWith("ye")
+				&& !w.endsWith("oe") && w.length() > 2) {
+			forms.add(w.substring(0, w.length() - 1) + "ing");
+		} else if (single) {
+			forms.add(w + "ing");
+		}
+		if (doubles)
+			forms.add(doubled + "ing");
+		if (irregular != null && irregular.length > 1)
+			return;
+
+		if (w.endsWith("e"))
+			forms.add(w + "d");
+		else if (consonantY(w))
+			forms.add(w.substring(0, w.length() - 1) + "ied");
+		else if (single)
+			forms.add(w + "ed");
+		if (doubles)
+			forms.add(doubled + "ed");
+	}
+
+	private static void englishAdjective(String w, Set<String> forms) {
+		String[] irregular = englishAdjectives.get(w);
+		if (irregular != null) {
+			add(forms, irregular);
+			return;
+		}
+
+		// "bigger", but "more difficult"
+		if (syllables(w) > 2)
+			return;
+		boolean doubles = shortSyllable(w);
+		if (w.endsWith("e")) {
+			forms.add(w + "r");
+			forms.add(w + "st");
+		} else if (consonantY(w)) {
+			String stem = w.substring(0, w.length() - 1);
+			forms.add(stem + "ier");
+			forms.add(stem + "iest");
+		} else if (!doubles || syllables(w) > 1) {
+			forms.add(w + "er");
+			forms.add(w + "est");
+		}
+		if (doubles) {
+			String doubled = w + w.charAt(w.length() - 1);
+			forms.add(doubled + "er");
+			forms.add(doubled + "est");
+		}
+	}
+
+	/**
+	 * The plural of nouns and the third person singular of verbs.
+	 */
+	private static String sForm(String w) {
+		if (w.endsWith("s") || w.endsWith("x") || w.endsWith("z")
+				|| w.endsWith("ch") || w.endsWith("sh"))
+			return w + "es";
+		if (consonantY(w))
+			return w.substring(0, w.length() - 1) + "ies";
+		return w + "s";
+	}
+
+	private static boolean consonantY(String w) {
+		return w.length() > 1 && w.endsWith("y")
+				&& !isVowel(w.charAt(w.length() - 2));
+	}
+
+	/**
+	 * Determines if <tt>w</tt> ends with consonant, vowel, consonant, so the
+	 * last consonant may be doubled as in "stopped" or "bigger".
+	 */
+	private static boolean shortSyllable(String w) {
+		int n = w.length();
+		if (n < 3)
+			return false;
+
+		char last = w.charAt(n - 1);
+		return !isVowel(last) && "wxy".indexOf(last) < 0
+				&& Character.isLetter(last) && isVowel(w.charAt(n - 2))
+				&& !isVowel(w.charAt(n - 3));
+	}
+
+	private static boolean isVowel(char c) {
+		return VOWELS.indexOf(c) >= 0;
+	}
+
+	/**
+	 * Counts the groups of vowels of <tt>w</tt>, which is the number of its
+	 * syllables for most words, e.g. 1 for "stop" and "Haus".
+	 */
+	private static int syllables(String w) {
+		int res = 0;
+		boolean vowel = false;
+		for (int i = 0; i < w.length(); i++) {
+			char c = w.charAt(i);
+			boolean v = isVowel(c) || c == 'ä' || c == 'ö' || c == 'ü'
+					|| c == 'y' && i > 0;
+			if (v && !vowel)
+				res++;
+			vowel = v;
+		}
+		return res;
+	}
+
+	private static void germanVerb(String w, Set<String> forms) {
+		String[] irregular = germanVerbs.get(w);
+		if (irregular != null)
+			add(forms, irregular);
+
+		String stem;
+		if (w.endsWith("eln") || w.endsWith("ern"))
+			stem = w.substring(0, w.length() - 1);
+		else if (w.endsWith("en"))
+			stem = w.substring(0, w.length() - 2);
+		else
+			return;
+		if (stem.isEmpty())
+			return;
+
+		forms.add(stem + "e");
+		forms.add(stem + "en");
+		String e = "";
+		if (stem.endsWith("d") || stem.endsWith("t"))
+			e = "e";
+		forms.add(stem + e + "st");
+		forms.add(stem + e + "t");
+		if (irregular != null)
+			return;
+
+		forms.add(stem + e + "te");
+		forms.add(stem + e + "test");
+		forms.add(stem + e + "ten");
+		forms.add(stem + e + "tet");
+		if (w.endsWith("ieren"))
+			forms.add(stem + "t");
+		else
+			forms.add("ge" + stem + e + "t");
+	}
+
+	/**
+	 * Generates the genitive and plural forms of a German noun.
+	 *
+	 * @param gender
+	 *            "m", "f", "n", "pl" or null if it is not known
+	 */
+	private static void germanNoun(String w, String gender, Set<String> forms) {
+		// the dative plural of plural nouns, e.g. "Leuten"
+		if ("pl".equals(gender)) {
+			if (!w.endsWith("n") && !w.endsWith("s"))
+				forms.add(w + "n");
+			return;
+		}
+		// diminutives only take the genitive "-s"
+		if (w.endsWith("chen") || w.endsWith("lein")) {
+			forms.add(w + "s");
+			return;
+		}
+
+		String umlaut = umlaut(w);
+		// only short nouns change their vowel, e.g. "Haus", "Häuser", and
+		// those ending in "-el", "-en" and "-er", e.g. "Vater", "Väter"
+		boolean reduced = w.endsWith("el") || w.endsWith("en")
+				|| w.endsWith("er");
+		if (w.endsWith("au") || syllables(w) > 1 && !reduced)
+			umlaut = null;
+
+		// feminine nouns have no genitive ending
+		if ("f".equals(gender) || gender == null && syllables(w) > 1
+				&& endsWith(w, FEMININE_ENDINGS)) {
+			if (w.endsWith("in"))
+				forms.add(w + "nen");
+			else if (w.endsWith("e") || reduced)
+				forms.add(w + "n");
+			else
+				forms.add(w + "en");
+			if (umlaut != null && !reduced) {
+				forms.add(umlaut + "e");
+				forms.add(umlaut + "en");
+			} else if (umlaut != null) {
+				forms.add(umlaut);
+				forms.add(umlaut + "n");
+			}
+			return;
+		}
+
+		if (w.endsWith("e")) {
+			forms.add(w + "n");
+			// the genitive of masculine nouns like "Name", "Namens"
+			if ("m".equals(gender))
+				forms.add(w + "ns");
+			return;
+		}
+		// "Hauses", not "Hauss"
+		boolean sibilant = w.endsWith("s") || w.endsWith("ß")
+				|| w.endsWith("x") || w.endsWith("z");
+		if (!sibilant)
+			forms.add(w + "s");
+		if (reduced) {
+			if (!w.endsWith("en"))
+				forms.add(w + "n");
+			if (umlaut != null) {
+				forms.add(umlaut);
+				if (!w.endsWith("en"))
+					forms.add(umlaut + "n");
+			}
+			return;
+		}
+		forms.add(w + "es");
+		forms.add(w + "e");
+		forms.add(w + "en");
+		forms.add(w + "er");
+		forms.add(w + "ern");
+		if (umlaut != null) {
+			forms.add(umlaut + "e");
+			forms.add(umlaut + "en");
+			forms.add(umlaut + "er");
+			forms.add(umlaut + "ern");
+		}
+	}
+
+	private static void germanAdjective(String w, Set<String> forms) {
+		String[] endings = { "", "e", "en", "er", "em", "es" };
+		for (String ending : endings) {
+			forms.add(w + ending);
+		}
+		germanComparison(w, endings, forms);
+
+		// only short adjectives take an umlaut, e.g. "groß", "größer"
+		String umlaut = umlaut(w);
+		if (umlaut != null && syllables(w) == 1 && !w.contains("au"))
+			germanComparison(umlaut, endings, forms);
+	}
+
+	private static void germanComparison(String w, String[] endings,
+			Set<String> forms) {
+		String comparative = w.endsWith("e") ? w + "r" : w + "er";
+		String superlative = w.endsWith("d") || w.endsWith("t")
+				|| w.endsWith("s") || w.endsWith("ß") || w.endsWith("z") ? w
+				+ "est" : w + "st";
+		for (String ending : endings) {
+			forms.add(comparative + ending);
+			if (!ending.isEmpty())
+				forms.add(superlative + ending);
+		}
+	}
+
+	/**
+	 * Replaces the last "au", "a", "o" or "u" of <tt>w</tt> by its umlaut.
+	 *
+	 * @return the umlauted word or null if it has no such vowel or its last
+	 *         one is "eu"
+	 */
+	private static String umlaut(String w) {
+		for (int i = w.length() - 1; i >= 0; i--) {
+			char c = w.charAt(i);
+			// "eu" has no umlaut, e.g. "Freund", "Freunde"
+			if (c == 'u' && i > 0 && w.charAt(i - 1) == 'e')
+				return null;
+			if (c == 'u' && i > 0 && w.charAt(i - 1) == 'a')
+				return w.substring(0, i - 1) + "äu" + w.substring(i + 1);
+			if (c == 'a')
+				return w.substring(0, i) + 'ä' + w.substring(i + 1);
+			if (c == 'o')
+				return w.substring(0, i) + 'ö' + w.substring(i + 1);
+			if (c == 'u')
+				return w.substring(0, i) + 'ü' + w.substring(i + 1);
+		}
+		return null;
+	}
+
+	private static boolean endsWith(String w, String[] endings) {
+		for (String ending : endings) {
+			if (w.endsWith(ending))
+				return true;
+		}
+		return false;
+	}
+
+	private static void add(Set<String> forms, String[] words) {
+		for (String word : words) {
+			forms.add(word);
+		}
+	}
+}
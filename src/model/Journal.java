@@ -0,0 +1,657 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal of the changes of a <tt>VocabularyBox</tt>. The box
+ * stored in a .vobo file is continued by the journal in the file of the same
+ * name with the suffix ".journal". Every change is appended to the journal as
+ * a small record, and loading the box replays the journal on top of the
+ * stored box.
+ *
+ * Records are not written by the changing thread but by a flusher thread,
+ * which waits <tt>COMMIT_DELAY</tt> ms for more records and then writes and
+ * syncs all of them at once (group commit). So a change costs only the
+ * encoding of its record, and at most the changes of the last
+ * <tt>COMMIT_DELAY</tt> ms are lost on a crash.
+ *
+ * A journal file starts with the 4 bytes <tt>MAGIC</tt> and its generation.
+ * The stored box records the generation of the journal continuing it, so
+ * journals of an older generation are already contained in the box and are
+ * not replayed. That way the box can be stored again while a new journal
+ * is already written (see <tt>VocabularyBox</tt>). Every record is its length,
+ * the CRC32 of its contents and the contents, so a record torn by a crash is
+ * detected and ends the replay. A record that does not fit to the box, e.g.
+ * the removal of a vocab the box does not contain, ends the replay as well,
+ * and the box is left as it was before that record.
+ *
+ */
+class Journal {
+
+	/**
+	 * The first 4 bytes of every journal, "VoJo" in ASCII.
+	 */
+	static final int MAGIC = 0x566F4A6F;
+
+	/**
+	 * The time in ms the flusher waits for more records before it syncs.
+	 */
+	static final long COMMIT_DELAY = 10;
+
+	private static final byte INSERT_VOCAB = 1;
+	private static final byte INSERT_CARD = 2;
+	private static final byte REMOVE = 3;
+	private static final byte ANSWER = 4;
+	private static final byte ANSWER_WITH_LIMIT = 5;
+	private static final byte SHUFFLE = 6;
+	private static final byte REVIEW = 7;
+	private static final byte RENAME = 8;
+	private static final byte EDIT = 9;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String path;
+	private final int generation;
+	private final FileChannel channel;
+	private final Thread flusher;
+
+	/** the records not written yet */
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private long appended = 0;
+	private long synced = 0;
+	private long size;
+	private boolean closed = false;
+	private IOException failure = null;
+
+	private Journal(String path, int generation, FileChannel channel,
+			long size) {
+		this.path = path;
+		this.generation = generation;
+		this.channel = channel;
+		this.size = size;
+		flusher = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+			}
+
+		}, "Journal-" + new File(path).getName());
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Retrieves the path of the journal continuing the box stored in
+	 * <tt>boxPath</tt>.
+	 */
+	static String pathOf(String boxPath) {
+		return boxPath + ".journal";
+	}
+
+	/**
+	 * Retrieves the path a journal is moved to while the box it continues is
+	 * stored again.
+	 */
+	static String oldPathOf(String boxPath) {
+		return boxPath + ".journal.old";
+	}
+
+	/**
+	 * Creates an empty journal continuing the box stored in
+	 * <tt>boxPath</tt>, replacing an existing one.
+	 *
+	 * @param boxPath
+	 *            path to the .vobo file
+	 * @param generation
+	 *            the generation of the journal
+	 * @return the new journal
+	 * @throws IOException
+	 */
+	static Journal create(String boxPath, int generation) throws IOException {
+		String path = pathOf(boxPath);
+		FileChannel channel = new FileOutputStream(path).getChannel();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(8);
+			header.putInt(MAGIC).putInt(generation).flip();
+			while (header.hasRemaining())
+				channel.write(header);
+			channel.force(true);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return new Journal(path, generation, channel, 8);
+	}
+
+	/**
+	 * Retrieves a generation greater than the ones of all journals of the
+	 * box stored in <tt>boxPath</tt>, so a box stored with it does not
+	 * replay them.
+	 *
+	 * @param boxPath
+	 *            path to the .vobo file
+	 * @return the next generation, at least 1
+	 */
+	static int nextGeneration(String boxPath) {
+		int max = 0;
+		for (String path : new String[] { oldPathOf(boxPath), pathOf(boxPath) }) {
+			try {
+				DataInputStream in = new DataInputStream(new FileInputStream(
+						path));
+				try {
+					if (in.readInt() == MAGIC)
+						max = Math.max(max, in.readInt());
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				// no journal or not even a header
+			}
+		}
+		return max + 1;
+	}
+
+	/**
+	 * Deletes the journals of the box stored in <tt>boxPath</tt>.
+	 *
+	 * @param boxPath
+	 *            path to the .vobo file
+	 */
+	static void delete(String boxPath) {
+		new File(oldPathOf(boxPath)).delete();
+		new File(pathOf(boxPath)).delete();
+	}
+
+	/**
+	 * Replays the journals of the box stored in <tt>boxPath</tt> that are not
+	 * contained in it yet.
+	 *
+	 * @param boxPath
+	 *            path to the .vobo file
+	 * @param box
+	 *            the box stored in <tt>boxPath</tt>, it must not have a
+	 *            journal
+	 * @param generation
+	 *            the generation of the journal continuing the stored box
+	 * @return null if all records were replayed, otherwise a message telling
+	 *         where the replay ended, since the rest of a journal was torn or
+	 *         did not fit to the box
+	 * @throws IOException
+	 *             if a journal could not be read
+	 */
+	static String replay(String boxPath, VocabularyBox box, int generation)
+			throws IOException {
+		for (String path : new String[] { oldPathOf(boxPath), pathOf(boxPath) }) {
+			if (!new File(path).exists())
+				continue;
+			// the records after the end continue a box that does not exist
+			String end = replay(path, generation, box);
+			if (end != null)
+				return end;
+		}
+		return null;
+	}
+
+	private static String replay(String path, int generation,
+			VocabularyBox box) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				readAll(path)));
+		if (in.available() < 8 || in.readInt() != MAGIC
+				|| in.readInt() < generation)
+			return null;
+
+		int records = 0;
+		CRC32 crc = new CRC32();
+		while (in.available() >= 8) {
+			int length = in.readInt();
+			int checksum = in.readInt();
+			if (length <= 0 || length > in.available())
+				break;
+			byte[] record = new byte[length];
+			in.readFully(record);
+			crc.reset();
+			crc.update(record);
+			if ((int) crc.getValue() != checksum)
+				break;
+
+			try {
+				apply(new DataInputStream(new ByteArrayInputStream(record)),
+						box);
+			} catch (IOException e) {
+				return "ignored the changes of " + path + " from record "
+						+ (records + 1) + " on, it does not fit to the box: "
+						+ e.getMessage();
+			} catch (RuntimeException e) {
+				return "ignored the changes of " + path + " from record "
+						+ (records + 1) + " on, it does not fit to the box: "
+						+ e;
+			}
+			records++;
+		}
+		if (in.available() > 0)
+			return "ignored the torn end of " + path + " after record "
+					+ records;
+		return null;
+	}
+
+	private static byte[] readAll(String path) throws IOException {
+		FileInputStream in = new FileInputStream(path);
+		try {
+			FileChannel channel = in.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(path + " is too large");
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0)
+					break;
+			}
+			byte[] res = new byte[buffer.position()];
+			buffer.flip();
+			buffer.get(res);
+			return res;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void apply(DataInputStream in, VocabularyBox box)
+			throws IOException {
+		byte op = in.readByte();
+		switch (op) {
+		case INSERT_VOCAB: {
+			String vocab = readString(in);
+			if (!box.insert(vocab))
+				throw new IOException("'" + vocab + "' is in the box already");
+			break;
+		}
+		case INSERT_CARD:
+			box.insert(readCard(in));
+			break;
+		case REMOVE: {
+			String vocab = readString(in);
+			if (box.remove(vocab) == null)
+				throw new IOException("'" + vocab + "' is not in the box");
+			break;
+		}
+		case ANSWER: {
+			int caseNo = in.readInt();
+			boolean correct = in.readBoolean();
+			box.restoreNextVocabInCase(caseNo, readCard(in));
+			box.answerVocabInCase(caseNo, correct);
+			break;
+		}
+		case ANSWER_WITH_LIMIT: {
+			int limit = in.readInt();
+			boolean correct = in.readBoolean();
+			box.restoreNextVocabInCase(0, readCard(in));
+			box.answerVocabInCaseZeroWithLimit(limit, correct);
+			break;
+		}
+		case SHUFFLE:
+			box.shuffleCase(in.readInt(), in.readLong());
+			break;
+		case REVIEW: {
+			int caseNo = in.readInt();
+			long due = in.readLong();
+			int interval = in.readInt();
+			int ease = in.readInt();
+			int repetitions = in.readInt();
+			VocabularyCard card = readCard(in);
+			card.schedule(due, interval, ease, repetitions);
+			box.restoreReview(caseNo, card);
+			break;
+		}
+		case RENAME: {
+			String oldVocab = readString(in);
+			box.restoreRename(oldVocab, readString(in));
+			break;
+		}
+		case EDIT:
+			box.restoreEdit(readCard(in));
+			break;
+		default:
+			throw new IOException("unknown record " + op);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static VocabularyCard readCard(DataInputStream in)
+			throws IOException {
+		VocabularyCard card = new VocabularyCard(readString(in));
+		int germans = in.readInt();
+		for (int i = 0; i < germans; i++) {
+			String[] german = new String[in.readInt()];
+			for (int j = 0; j < german.length; j++) {
+				german[j] = readString(in);
+			}
+			card.addGerman(german);
+		}
+		return card;
+	}
+
+	/**
+	 * Retrieves the generation of this journal.
+	 *
+	 * @return the generation
+	 */
+	int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Retrieves the size of the journal file including records not written
+	 * yet.
+	 *
+	 * @return the size in bytes
+	 */
+	synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Records <tt>VocabularyBox.insert(vocab)</tt>.
+	 */
+	void insert(String vocab) {
+		Record r = new Record(INSERT_VOCAB);
+		r.putString(vocab);
+		append(r);
+	}
+
+	/**
+	 * Records <tt>VocabularyBox.insert(card)</tt>.
+	 */
+	void insert(VocabularyCard card) {
+		Record r = new Record(INSERT_CARD);
+		r.putCard(card);
+		append(r);
+	}
+
+	/**
+	 * Records <tt>VocabularyBox.remove(vocab)</tt>.
+	 */
+	void remove(String vocab) {
+		Record r = new Record(REMOVE);
+		r.putString(vocab);
+		append(r);
+	}
+
+	/**
+	 * Records <tt>VocabularyBox.answerVocabInCase(caseNo, correct)</tt>. The
+	 * answered card is recorded as well, since its translations may have been
+	 * edited while it was shown.
+	 */
+	void answer(int caseNo, boolean correct, VocabularyCard card) {
+		Record r = new Record(ANSWER);
+		r.putInt(caseNo);
+		r.putBoolean(correct);
+		r.putCard(card);
+		append(r);
+	}
+
+	/**
+	 * Records
+	 * <tt>VocabularyBox.answerVocabInCaseZeroWithLimit(limit, correct)</tt>
+	 * and the answered card.
+	 */
+	void answerWithLimit(int limit, boolean correct, VocabularyCard card) {
+		Record r = new Record(ANSWER_WITH_LIMIT);
+		r.putInt(limit);
+		r.putBoolean(correct);
+		r.putCard(card);
+		append(r);
+	}
+
+	/**
+	 * Records the shuffling of a case with a random generator seeded with
+	 * <tt>seed</tt>.
+	 */
+	void shuffle(int caseNo, long seed) {
+		Record r = new Record(SHUFFLE);
+		r.putInt(caseNo);
+		r.putLong(seed);
+		append(r);
+	}
+
+	/**
+	 * Records <tt>VocabularyBox.reviewVocab(card, quality)</tt> by the
+	 * reviewed card, its new schedule and the case it was put into, so the
+	 * review does not depend on the time it is replayed at.
+	 */
+	void review(int caseNo, VocabularyCard card) {
+		Record r = new Record(REVIEW);
+		r.putInt(caseNo);
+		r.putLong(card.getDue());
+		r.putInt(card.getInterval());
+		r.putInt(card.getEase());
+		r.putInt(card.getRepetitions());
+		r.putCard(card);
+		append(r);
+	}
+
+	/**
+	 * Records <tt>VocabularyCard.setEnglish(newVocab)</tt> of a card of the
+	 * box whose vocab was <tt>oldVocab</tt>.
+	 */
+	void rename(String oldVocab, String newVocab) {
+		Record r = new Record(RENAME);
+		r.putString(oldVocab);
+		r.putString(newVocab);
+		append(r);
+	}
+
+	/**
+	 * Records a change of the translations of a card of the box by the card
+	 * with all its translations.
+	 */
+	void edit(VocabularyCard card) {
+		Record r = new Record(EDIT);
+		r.putCard(card);
+		append(r);
+	}
+
+	private synchronized void append(Record r) {
+		if (closed)
+			throw new IllegalStateException("The journal is closed");
+		if (failure != null)
+			return;
+
+		CRC32 crc = new CRC32();
+		crc.update(r.bytes, 0, r.length);
+		writeInt(r.length);
+		writeInt((int) crc.getValue());
+		pending.write(r.bytes, 0, r.length);
+		appended++;
+		size += 8 + r.length;
+		notifyAll();
+	}
+
+	private void writeInt(int v) {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			pending.write(v >>> shift);
+		}
+	}
+
+	/**
+	 * Waits until all records appended so far are synced to the file.
+	 *
+	 * @throws IOException
+	 *             if the flusher failed to write records
+	 */
+	synchronized void sync() throws IOException {
+		long target = appended;
+		boolean interrupted = false;
+		while (synced < target && failure == null && flusher.isAlive()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Syncs all records and closes the journal.
+	 *
+	 * @throws IOException
+	 *             if the flusher failed to write records or the file could
+	 *             not be closed
+	 */
+	void close() throws IOException {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			notifyAll();
+		}
+		boolean interrupted = false;
+		while (flusher.isAlive()) {
+			try {
+				flusher.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		channel.close();
+		synchronized (this) {
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	/**
+	 * The loop of the flusher thread. It ends when the journal is closed and
+	 * all records are written.
+	 */
+	private void flush() {
+		try {
+			while (true) {
+				synchronized (this) {
+					while (pending.size() == 0 && !closed)
+						wait();
+					if (pending.size() == 0)
+						return;
+				}
+				// let more records arrive to sync them at once
+				Thread.sleep(COMMIT_DELAY);
+
+				ByteArrayOutputStream batch;
+				long target;
+				synchronized (this) {
+					batch = pending;
+					pending = new ByteArrayOutputStream();
+					target = appended;
+				}
+
+				ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				channel.force(false);
+
+				synchronized (this) {
+					synced = target;
+					notifyAll();
+				}
+			}
+		} catch (IOException e) {
+			// sync and close throw it, so journaling stops
+			e.printStackTrace();
+			synchronized (this) {
+				failure = e;
+				notifyAll();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The contents of a record being encoded, in the big-endian byte order of
+	 * a DataInputStream.
+	 */
+	private static class Record {
+		private byte[] bytes = new byte[64];
+		private int length = 0;
+
+		Record(byte op) {
+			putByte(op);
+		}
+
+		private void ensure(int n) {
+			if (length + n > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + n));
+		}
+
+		void putByte(int v) {
+			ensure(1);
+			bytes[length++] = (byte) v;
+		}
+
+		void putBoolean(boolean v) {
+			putByte(v ? 1 : 0);
+		}
+
+		void putInt(int v) {
+			ensure(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				bytes[length++] = (byte) (v >>> shift);
+			}
+		}
+
+		void putLong(long v) {
+			putInt((int) (v >>> 32));
+			putInt((int) v);
+		}
+
+		void putString(String s) {
+			if (s == null) {
+				putInt(-1);
+				return;
+			}
+			byte[] b = s.getBytes(UTF8);
+			putInt(b.length);
+			ensure(b.length);
+			System.arraycopy(b, 0, bytes, length, b.length);
+			length += b.length;
+		}
+
+		void putCard(VocabularyCard card) {
+			putString(card.getEnglish());
+			List<List<String>> germans = card.getGermans();
+			putInt(germans.size());
+			for (List<String> german : germans) {
+				putInt(german.size());
+				for (String s : german) {
+					putString(s);
+				}
+			}
+		}
+	}
+}
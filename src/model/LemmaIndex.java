@@ -0,0 +1,278 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An index from inflected word forms to the entries of their base form, e.g.
+ * from "went" and "going" to the entries of "to go". The forms of every entry
+ * are generated by <tt>Inflections</tt> and stored in a separate table
+ * together with the id of the entry, so a search for a word form is a single
+ * lookup in the primary key of that table.
+ *
+ * The index is maintained by <tt>SQLManager</tt>, i.e. it has to be updated
+ * whenever an entry is inserted.
+ *
+ */
+class LemmaIndex {
+
+	/**
+	 * The maximum number of forms searched for with one statement. SQLite
+	 * allows at most 999 parameters per statement.
+	 */
+	static final int MAX_BATCH = 512;
+
+	private final String table;
+	private final String column;
+	private final boolean english;
+
+	private final String insertSql;
+	private final String deleteSql;
+	private final String[] searchSql = new String[2];
+	private final String[] batchSql = new String[Integer
+			.numberOfTrailingZeros(MAX_BATCH) + 1];
+
+	/**
+	 * Creates a new LemmaIndex over <tt>column</tt> of the EnglishGerman table
+	 * that is stored in <tt>table</tt>. Ranked searches are ordered by
+	 * <tt>rankColumn</tt>.
+	 *
+	 * @param table
+	 *            name of the table the forms are stored in
+	 * @param column
+	 *            name of the indexed column of EnglishGerman, "english" or
+	 *            "german"
+	 * @param rankColumn
+	 *            name of the column of EnglishGerman ranking the entries for
+	 *            searches on <tt>column</tt>
+	 */
+	LemmaIndex(String table, String column, String rankColumn) {
+		this.table = table;
+		this.column = column;
+		this.english = column.equals("english");
+
+		insertSql = "INSERT OR IGNORE INTO " + table + " (form, id) VALUES(?,?)";
+		deleteSql = "DELETE FROM " + table + " WHERE form = ? AND id = ?";
+		String select = "SELECT english, german, type FROM EnglishGerman WHERE id IN (SELECT id FROM "
+				+ table + " WHERE form = ?)";
+		searchSql[0] = select;
+		searchSql[1] = select + " ORDER BY " + rankColumn + " LIMIT ?";
+
+		StringBuilder params = new StringBuilder("?");
+		for (int i = 0; i < batchSql.length; i++) {
+			batchSql[i] = "SELECT e.english, e.german, e.type, l.form FROM "
+					+ table + " l JOIN EnglishGerman e ON e.id = l.id"
+					+ " WHERE l.form IN (" + params + ") ORDER BY l.form, e."
+					+ rankColumn;
+			// double the number of parameters
+			String half = params.toString();
+			params.append(',').append(half);
+		}
+	}
+
+	/**
+	 * Creates the index table if it does not exist yet. If it did not exist,
+	 * the index is built for all entries already stored in EnglishGerman.
+	 *
+	 * @param c
+	 *            the connection to create the table in
+	 * @throws SQLException
+	 */
+	void create(Connection c) throws SQLException {
+		boolean exists;
+		PreparedStatement stmt = c
+				.prepareStatement("SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?");
+		try {
+			stmt.setString(1, table);
+			ResultSet rs = stmt.executeQuery();
+			exists = rs.next();
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+
+		Statement create = c.createStatement();
+		try {
+			create.executeUpdate("CREATE TABLE IF NOT EXISTS " + table
+					+ " (form VARCHAR(250) NOT NULL, id INTEGER NOT NULL,"
+					+ " PRIMARY KEY (form, id))");
+		} finally {
+			create.close();
+		}
+
+		if (!exists)
+			rebuild(c);
+	}
+
+	/**
+	 * Drops the index table.
+	 *
+	 * @param c
+	 *            the connection to drop the table in
+	 * @throws SQLException
+	 */
+	void drop(Connection c) throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			stmt.executeUpdate("DROP TABLE IF EXISTS " + table);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Indexes all entries of EnglishGerman. The caller is responsible for the
+	 * table being empty before.
+	 *
+	 * @param c
+	 *            the connection to the database
+	 * @throws SQLException
+	 */
+	void rebuild(Connection c) throws SQLException {
+		boolean autoCommit = c.getAutoCommit();
+		c.setAutoCommit(false);
+
+		Statement select = c.createStatement();
+		PreparedStatement insert = c.prepareStatement(insertSql());
+		try {
+			ResultSet rs = select.executeQuery("SELECT id, " + column
+					+ ", type FROM EnglishGerman");
+			int counter = 0;
+			while (rs.next()) {
+				add(insert, rs.getLong(1), rs.getString(2), rs.getString(3));
+				if (++counter % DictionaryImporter.BATCH_SIZE == 0)
+					insert.executeBatch();
+			}
+			rs.close();
+			insert.executeBatch();
+			c.commit();
+		} finally {
+			select.close();
+			insert.close();
+			c.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Retrieves the SQL statement that inserts a single (form, id) pair.
+	 *
+	 * @return SQL for a statement to be used with <tt>add</tt>
+	 */
+	String insertSql() {
+		return insertSql;
+	}
+
+	/**
+	 * Adds the forms of <tt>text</tt> for the entry <tt>id</tt> to the batch
+	 * of <tt>insert</tt>. The caller has to execute the batch.
+	 *
+	 * @param insert
+	 *            a statement prepared from <tt>insertSql()</tt>
+	 * @param id
+	 *            the id of the entry in EnglishGerman
+	 * @param text
+	 *            the indexed value of the entry
+	 * @param type
+	 *            the type of the entry
+	 * @throws SQLException
+	 */
+	void add(PreparedStatement insert, long id, String text, String type)
+			throws SQLException {
+		for (String form : english ? Inflections.english(text, type)
+				: Inflections.german(text, type)) {
+			insert.setString(1, form);
+			insert.setLong(2, id);
+			insert.addBatch();
+		}
+	}
+
+	/**
+	 * Retrieves the SQL statement that deletes a single (form, id) pair.
+	 *
+	 * @return SQL for a statement to be used with <tt>remove</tt>
+	 */
+	String deleteSql() {
+		return deleteSql;
+	}
+
+	/**
+	 * Adds the removal of the forms of <tt>text</tt> for the entry
+	 * <tt>id</tt> to the batch of <tt>delete</tt>. The caller has to execute
+	 * the batch.
+	 *
+	 * @param delete
+	 *            a statement prepared from <tt>deleteSql()</tt>
+	 * @param id
+	 *            the id of the removed entry
+	 * @param text
+	 *            the indexed value of the entry
+	 * @param type
+	 *            the type of the entry
+	 * @throws SQLException
+	 */
+	void remove(PreparedStatement delete, long id, String text, String type)
+			throws SQLException {
+		// both statements take the same parameters
+		add(delete, id, text, type);
+	}
+
+	/**
+	 * Retrieves the SELECT statement for the entries having the form bound to
+	 * the first parameter, which has to be folded by <tt>fold</tt>.
+	 *
+	 * @param ranked
+	 *            true to select the best entries only, the limit being bound
+	 *            to the second parameter
+	 * @return SQL for the search
+	 */
+	String searchSql(boolean ranked) {
+		return searchSql[ranked ? 1 : 0];
+	}
+
+	/**
+	 * Retrieves the SELECT statement for the entries having any of up to
+	 * <tt>n</tt> forms. The statement has <tt>batchSize(n)</tt> parameters,
+	 * which have to be bound to forms folded by <tt>fold</tt> or to null. The
+	 * rows are (english, german, type, form), ordered by the form and then by
+	 * the rank of the entry.
+	 *
+	 * @param n
+	 *            the number of forms, between 1 and <tt>MAX_BATCH</tt>
+	 * @return SQL for the search
+	 */
+	String batchSql(int n) {
+		return batchSql[Integer.numberOfTrailingZeros(batchSize(n))];
+	}
+
+	/**
+	 * Retrieves the number of parameters of <tt>batchSql(n)</tt>. It is
+	 * rounded up to a power of two, so only a few distinct statements are
+	 * prepared.
+	 *
+	 * @param n
+	 *            the number of forms, between 1 and <tt>MAX_BATCH</tt>
+	 * @return the number of parameters
+	 */
+	static int batchSize(int n) {
+		if (n < 1 || n > MAX_BATCH)
+			throw new IllegalArgumentException(
+					"The number of forms must be between 1 and " + MAX_BATCH
+							+ "!");
+		int size = Integer.highestOneBit(n);
+		return size == n ? n : size << 1;
+	}
+
+	/**
+	 * Folds a search term the same way the forms are folded.
+	 *
+	 * @param term
+	 *            the search term
+	 * @return the term as stored in the index
+	 */
+	static String fold(String term) {
+		return Inflections.headword(term);
+	}
+}
@@ -0,0 +1,220 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+/**
+ * A bounded cache of sorted search results of a <tt>SQLManager</tt>. The
+ * results are evicted in least recently used order as soon as the total number
+ * of characters of all cached results exceeds the capacity.
+ *
+ * Writes to the database invalidate the whole cache. A result computed while
+ * the cache was invalidated is not stored, so a search running concurrently
+ * with a write cannot bring back an outdated result.
+ *
+ */
+public class LookupCache {
+
+	/**
+	 * The default capacity in characters.
+	 */
+	static final long DEFAULT_CAPACITY = 4L << 20;
+
+	private static final int ENTRY_WEIGHT = 16;
+
+	private final long capacity;
+	private final LinkedHashMap<Key, Entry> results = new LinkedHashMap<Key, Entry>(
+			16, 0.75f, true);
+
+	private long weight = 0;
+	private long generation = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Creates a new LookupCache holding at most <tt>capacity</tt> characters.
+	 *
+	 * @param capacity
+	 *            the maximum total size of the cached results in characters
+	 */
+	LookupCache(long capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Retrieves a copy of the cached result of a search.
+	 *
+	 * @param english
+	 *            true for a search on the english column, false for german
+	 * @param term
+	 *            the search term
+	 * @param like
+	 *            true for an infix search
+	 * @param limit
+	 *            the limit of a ranked search or 0
+	 * @return a copy of the cached result or null if it is not cached
+	 */
+	synchronized LinkedList<String[]> get(boolean english, String term,
+			boolean like, int limit) {
+		Entry entry = results.get(new Key(english, term, like, limit));
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return new LinkedList<String[]>(entry.result);
+	}
+
+	/**
+	 * Retrieves the current generation of the cache. It has to be passed to
+	 * <tt>put</tt> to store a result computed afterwards.
+	 *
+	 * @return the current generation
+	 */
+	synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * Stores a copy of the result of a search if the cache has not been
+	 * invalidated since <tt>generation</tt> was retrieved.
+	 *
+	 * @param english
+	 *            true for a search on the english column, false for german
+	 * @param term
+	 *            the search term
+	 * @param like
+	 *            true for an infix search
+	 * @param limit
+	 *            the limit of a ranked search or 0
+	 * @param result
+	 *            the sorted result
+	 * @param generation
+	 *            the generation retrieved before the search was run
+	 */
+	synchronized void put(boolean english, String term, boolean like,
+			int limit, LinkedList<String[]> result, long generation) {
+		if (generation != this.generation)
+			return;
+
+		long w = ENTRY_WEIGHT + term.length();
+		for (String[] row : result) {
+			for (String s : row) {
+				w += ENTRY_WEIGHT + (s == null ? 0 : s.length());
+			}
+		}
+		if (w > capacity)
+			return;
+
+		Entry old = results.put(new Key(english, term, like, limit),
+				new Entry(new LinkedList<String[]>(result), w));
+		if (old != null)
+			weight -= old.weight;
+		weight += w;
+
+		Iterator<Entry> eldest = results.values().iterator();
+		while (weight > capacity) {
+			weight -= eldest.next().weight;
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	synchronized void clear() {
+		results.clear();
+		weight = 0;
+		generation++;
+	}
+
+	/**
+	 * Retrieves the number of searches answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Retrieves the number of searches that were not cached.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Retrieves the number of results that were removed because the capacity
+	 * was exceeded.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Retrieves the number of cached results.
+	 *
+	 * @return the number of cached results
+	 */
+	public synchronized int size() {
+		return results.size();
+	}
+
+	/**
+	 * Retrieves the total size of the cached results in characters.
+	 *
+	 * @return the size of the cached results
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	private static class Entry {
+		private final LinkedList<String[]> result;
+		private final long weight;
+
+		Entry(LinkedList<String[]> result, long weight) {
+			this.result = result;
+			this.weight = weight;
+		}
+	}
+
+	private static class Key {
+		private final boolean english;
+		private final String term;
+		private final boolean like;
+		private final int limit;
+
+		Key(boolean english, String term, boolean like, int limit) {
+			this.english = english;
+			this.term = term;
+			this.like = like;
+			this.limit = limit;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Key k = (Key) other;
+				return english == k.english && like == k.like
+						&& limit == k.limit && term.equals(k.term);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return (term.hashCode() * 31 + limit) * 4 + (english ? 2 : 0)
+					+ (like ? 1 : 0);
+		}
+	}
+}
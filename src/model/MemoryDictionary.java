@@ -0,0 +1,743 @@
+package model;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * An immutable in-memory copy of the EnglishGerman table that answers the
+ * searches of <tt>SQLManager</tt> without touching the database.
+ *
+ * All distinct strings are packed into a single char buffer. The entries,
+ * the sorted keys of both columns, the postings from keys to entries and the
+ * trigram postings from trigrams to keys are plain int buffers. Exact
+ * searches are binary searches on the sorted keys, infix searches intersect
+ * the trigram postings of the term and only compare the remaining keys.
+ *
+ * Memory use is roughly 2 bytes per character of all distinct strings plus 12
+ * bytes per entry and 4 bytes per trigram occurrence in the distinct keys. For
+ * one million dict.cc entries (about 40 characters and 30 trigrams per entry)
+ * that are about 80 MB of characters and 130 MB of int buffers. Building the
+ * dictionary temporarily needs about twice as much.
+ *
+ * The dictionary can be stored as an image file that holds these buffers in
+ * little endian byte order, each aligned to 8 bytes. Loading an image maps
+ * the file read-only into memory and uses views of the mapping as buffers, so
+ * nothing is read or copied on startup; the operating system pages the parts
+ * in that searches touch, and the pages do not count towards the Java heap.
+ *
+ */
+class MemoryDictionary {
+
+	private static final int MAGIC = 0x4C424E44;
+	private static final int VERSION = 3;
+	private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private static final String selectSql = "SELECT english, german, type FROM EnglishGerman";
+	private static final String fingerprintSql = "SELECT (SELECT count(*) FROM EnglishGerman),"
+			+ " (SELECT generation FROM DictionaryGeneration)";
+
+	private final long count;
+	private final long generation;
+
+	private final CharBuffer heap;
+	private final IntBuffer offsets;
+
+	private final IntBuffer englishOf;
+	private final IntBuffer germanOf;
+	private final IntBuffer typeOf;
+
+	private final Column english;
+	private final Column german;
+
+	private MemoryDictionary(long count, long generation, CharBuffer heap,
+			IntBuffer offsets, IntBuffer englishOf, IntBuffer germanOf,
+			IntBuffer typeOf, Column english, Column german) {
+		this.count = count;
+		this.generation = generation;
+		this.heap = heap;
+		this.offsets = offsets;
+		this.englishOf = englishOf;
+		this.germanOf = germanOf;
+		this.typeOf = typeOf;
+		this.english = english;
+		this.german = german;
+	}
+
+	/**
+	 * Reads the whole EnglishGerman table and builds a MemoryDictionary of it.
+	 *
+	 * @param statements
+	 *            the connection to read from
+	 * @return the new dictionary
+	 * @throws SQLException
+	 */
+	static MemoryDictionary build(StatementCache statements)
+			throws SQLException {
+		long[] fingerprint = fingerprint(statements);
+		int n = (int) fingerprint[0];
+
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		StringBuilder heap = new StringBuilder();
+		int[] offsets = new int[16];
+		int[][] columns = new int[3][n];
+
+		ResultSet rs = statements.prepare(selectSql).executeQuery();
+		int e = 0;
+		try {
+			while (rs.next() && e < n) {
+				for (int c = 0; c < 3; c++) {
+					String s = rs.getString(c + 1);
+					if (s == null) {
+						columns[c][e] = -1;
+						continue;
+					}
+
+					Integer id = ids.get(s);
+					if (id == null) {
+						id = ids.size();
+						ids.put(s, id);
+						if (id + 1 >= offsets.length)
+							offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+						heap.append(s);
+						offsets[id + 1] = heap.length();
+					}
+					columns[c][e] = id;
+				}
+				e++;
+			}
+		} finally {
+			rs.close();
+		}
+		offsets = Arrays.copyOf(offsets, ids.size() + 1);
+		ids = null;
+
+		char[] chars = new char[heap.length()];
+		heap.getChars(0, chars.length, chars, 0);
+		heap = null;
+
+		int[] englishOf = Arrays.copyOf(columns[0], e);
+		int[] germanOf = Arrays.copyOf(columns[1], e);
+		int[] typeOf = Arrays.copyOf(columns[2], e);
+		columns = null;
+
+		return new MemoryDictionary(e, fingerprint[1], CharBuffer.wrap(chars),
+				IntBuffer.wrap(offsets), IntBuffer.wrap(englishOf),
+				IntBuffer.wrap(germanOf), IntBuffer.wrap(typeOf),
+				Column.build(chars, offsets, englishOf), Column.build(chars,
+						offsets, germanOf));
+	}
+
+	/**
+	 * Retrieves the number of entries of the EnglishGerman table and its
+	 * generation, which triggers change with every inserted, deleted or
+	 * updated entry. Truncating the table starts a new random generation, so
+	 * a dictionary with the same values contains the same entries.
+	 */
+	static long[] fingerprint(StatementCache statements) throws SQLException {
+		ResultSet rs = statements.prepare(fingerprintSql).executeQuery();
+		try {
+			rs.next();
+			return new long[] { rs.getLong(1), rs.getLong(2) };
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Determines if this dictionary was built from a table with the given
+	 * fingerprint.
+	 *
+	 * @param fingerprint
+	 *            the result of <tt>fingerprint</tt>
+	 * @return true if the dictionary is up to date
+	 */
+	boolean matches(long[] fingerprint) {
+		return count == fingerprint[0] && generation == fingerprint[1];
+	}
+
+	/**
+	 * Searches for an English word like <tt>SQLManager.searchForEnglish</tt>
+	 * does, but does not sort the result.
+	 *
+	 * @param term
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, all entries containing <tt>term</tt> are found
+	 * @return a list of String triples {english, german, type}
+	 */
+	LinkedList<String[]> searchForEnglish(String term, boolean like) {
+		return collect(english, english.find(heap, offsets, term, like),
+				englishOf, germanOf);
+	}
+
+	/**
+	 * Searches for a German word like <tt>SQLManager.searchForGerman</tt>
+	 * does, but does not sort the result.
+	 *
+	 * @param term
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, all entries containing <tt>term</tt> are found
+	 * @return a list of String triples {german, english, type}
+	 */
+	LinkedList<String[]> searchForGerman(String term, boolean like) {
+		return collect(german, german.find(heap, offsets, term, like),
+				germanOf, englishOf);
+	}
+
+	private LinkedList<String[]> collect(Column column, int[] keys,
+			IntBuffer first, IntBuffer second) {
+		LinkedList<String[]> res = new LinkedList<String[]>();
+		for (int k : keys) {
+			int end = column.postingStart.get(k + 1);
+			for (int p = column.postingStart.get(k); p < end; p++) {
+				int e = column.postings.get(p);
+				res.addLast(new String[] { string(first.get(e)),
+						string(second.get(e)), string(typeOf.get(e)) });
+			}
+		}
+		return res;
+	}
+
+	private String string(int id) {
+		if (id < 0)
+			return null;
+		int from = offsets.get(id);
+		char[] chars = new char[offsets.get(id + 1) - from];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = heap.get(from + i);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Stores this dictionary as an image file. The file is written next to
+	 * <tt>path</tt> first and then moved to <tt>path</tt>, so dictionaries
+	 * still mapping an older image at <tt>path</tt> are not affected.
+	 *
+	 * @param path
+	 *            the path of the image file
+	 * @throws IOException
+	 */
+	void store(String path) throws IOException {
+		Path target = Paths.get(path);
+		Path tmp = Paths.get(path + ".tmp");
+		ImageWriter out = new ImageWriter(tmp);
+		try {
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putLong(count);
+			out.putLong(generation);
+			out.chars(heap);
+			out.ints(offsets);
+			out.ints(englishOf);
+			out.ints(germanOf);
+			out.ints(typeOf);
+			english.store(out);
+			german.store(out);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Maps an image file written by <tt>store</tt> into memory. The file must
+	 * not be modified as long as the dictionary is in use.
+	 *
+	 * @param path
+	 *            the path of the image file
+	 * @return the dictionary stored in the file
+	 * @throws IOException
+	 *             if the file could not be mapped or is no dictionary image
+	 */
+	static MemoryDictionary load(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(path + " is too large to be mapped");
+			// the mapping stays valid after the file is closed
+			ByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()).order(ORDER);
+
+			try {
+				if (image.getInt() != MAGIC || image.getInt() != VERSION)
+					throw new IOException(path + " is no dictionary image");
+
+				long count = image.getLong();
+				long generation = image.getLong();
+				CharBuffer heap = section(image, 2).asCharBuffer();
+				IntBuffer offsets = section(image, 4).asIntBuffer();
+				IntBuffer englishOf = section(image, 4).asIntBuffer();
+				IntBuffer germanOf = section(image, 4).asIntBuffer();
+				IntBuffer typeOf = section(image, 4).asIntBuffer();
+				Column english = Column.load(image);
+				Column german = Column.load(image);
+
+				return new MemoryDictionary(count, generation, heap, offsets,
+						englishOf, germanOf, typeOf, english, german);
+			} catch (RuntimeException e) {
+				// truncated or corrupt image
+				throw new IOException(path + " is no valid dictionary image: "
+						+ e);
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Retrieves a view of the next section of an image and moves behind it.
+	 * A section is the number of its elements followed by the elements of
+	 * <tt>size</tt> bytes each.
+	 */
+	private static ByteBuffer section(ByteBuffer image, int size) {
+		long bytes = image.getLong() * size;
+		if (bytes < 0 || bytes > image.remaining())
+			throw new IllegalStateException("section exceeds the image");
+
+		ByteBuffer view = image.slice().order(ORDER);
+		view.limit((int) bytes);
+		image.position(align(image.position() + (int) bytes));
+		return view;
+	}
+
+	private static int align(int position) {
+		return (position + 7) & ~7;
+	}
+
+	/**
+	 * Writes the sections of an image file through a small buffer.
+	 */
+	private static class ImageWriter {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(
+				ORDER);
+		private long position = 0;
+
+		ImageWriter(Path path) throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		void putInt(int i) throws IOException {
+			ensure(4);
+			buffer.putInt(i);
+			position += 4;
+		}
+
+		void putLong(long l) throws IOException {
+			ensure(8);
+			buffer.putLong(l);
+			position += 8;
+		}
+
+		private void putChar(char c) throws IOException {
+			ensure(2);
+			buffer.putChar(c);
+			position += 2;
+		}
+
+		private void align() throws IOException {
+			while (position % 8 != 0) {
+				ensure(1);
+				buffer.put((byte) 0);
+				position++;
+			}
+		}
+
+		void chars(CharBuffer chars) throws IOException {
+			putLong(chars.limit());
+			for (int i = 0; i < chars.limit(); i++) {
+				putChar(chars.get(i));
+			}
+			align();
+		}
+
+		void ints(IntBuffer ints) throws IOException {
+			putLong(ints.limit());
+			for (int i = 0; i < ints.limit(); i++) {
+				putInt(ints.get(i));
+			}
+			align();
+		}
+
+		void longs(LongBuffer longs) throws IOException {
+			putLong(longs.limit());
+			for (int i = 0; i < longs.limit(); i++) {
+				putLong(longs.get(i));
+			}
+			align();
+		}
+
+		void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Compares the string <tt>id</tt> of the heap with <tt>s</tt> like
+	 * <tt>String.compareTo</tt> does.
+	 */
+	private static int compare(CharBuffer heap, IntBuffer offsets, int id, String s) {
+		int from = offsets.get(id);
+		int len = offsets.get(id + 1) - from;
+		int n = Math.min(len, s.length());
+		for (int i = 0; i < n; i++) {
+			char c = heap.get(from + i);
+			char d = s.charAt(i);
+			if (c != d)
+				return c - d;
+		}
+		return len - s.length();
+	}
+
+	/**
+	 * Determines if the string <tt>id</tt> of the heap contains <tt>term</tt>,
+	 * ignoring the case of ASCII letters like SQLite's LIKE does.
+	 */
+	private static boolean contains(CharBuffer heap, IntBuffer offsets, int id,
+			String term) {
+		int from = offsets.get(id);
+		int last = offsets.get(id + 1) - term.length();
+		for (int start = from; start <= last; start++) {
+			int i = 0;
+			while (i < term.length()
+					&& foldAscii(heap.get(start + i)) == foldAscii(term.charAt(i)))
+				i++;
+			if (i == term.length())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if the string <tt>id</tt> of the heap matches the LIKE
+	 * pattern <tt>pattern</tt>, i.e. '%' matches any sequence of characters
+	 * and '_' any single character.
+	 */
+	private static boolean like(CharBuffer heap, IntBuffer offsets, int id,
+			String pattern) {
+		int from = offsets.get(id);
+		int end = offsets.get(id + 1);
+		int s = from, p = 0, star = -1, mark = 0;
+		while (s < end) {
+			if (p < pattern.length()
+					&& (pattern.charAt(p) == '_' || pattern.charAt(p) != '%'
+							&& foldAscii(pattern.charAt(p)) == foldAscii(heap.get(s)))) {
+				s++;
+				p++;
+			} else if (p < pattern.length() && pattern.charAt(p) == '%') {
+				star = p++;
+				mark = s;
+			} else if (star >= 0) {
+				p = star + 1;
+				s = ++mark;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == '%')
+			p++;
+		return p == pattern.length();
+	}
+
+	private static char foldAscii(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	private static long gram(char[] chars, int from) {
+		return (long) Character.toLowerCase(chars[from]) << 32
+				| (long) Character.toLowerCase(chars[from + 1]) << 16
+				| Character.toLowerCase(chars[from + 2]);
+	}
+
+	private static int binarySearch(LongBuffer a, long key) {
+		int lo = 0, hi = a.limit() - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long v = a.get(mid);
+			if (v < key)
+				lo = mid + 1;
+			else if (v > key)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+
+	/**
+	 * The sorted keys of one column together with their postings and trigram
+	 * index.
+	 */
+	private static class Column {
+
+		/** distinct string ids in ascending order of the strings */
+		private final IntBuffer keys;
+		/** postings of key k are postings[postingStart[k], postingStart[k+1]) */
+		private final IntBuffer postingStart;
+		private final IntBuffer postings;
+		/** ascending distinct trigrams of the lower case keys */
+		private final LongBuffer grams;
+		/** keys containing grams[g] are gramKeys[gramStart[g], gramStart[g+1]) */
+		private final IntBuffer gramStart;
+		private final IntBuffer gramKeys;
+
+		private Column(IntBuffer keys, IntBuffer postingStart,
+				IntBuffer postings, LongBuffer grams, IntBuffer gramStart,
+				IntBuffer gramKeys) {
+			this.keys = keys;
+			this.postingStart = postingStart;
+			this.postings = postings;
+			this.grams = grams;
+			this.gramStart = gramStart;
+			this.gramKeys = gramKeys;
+		}
+
+		static Column build(final char[] heap, final int[] offsets, int[] of) {
+			// sort the distinct string ids used in this column
+			int strings = offsets.length - 1;
+			int[] position = new int[strings];
+			Arrays.fill(position, -1);
+			int distinct = 0;
+			for (int id : of) {
+				if (id >= 0 && position[id] < 0) {
+					position[id] = 0;
+					distinct++;
+				}
+			}
+			Integer[] sorted = new Integer[distinct];
+			distinct = 0;
+			for (int id = 0; id < strings; id++) {
+				if (position[id] == 0)
+					sorted[distinct++] = id;
+			}
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					int i = offsets[a], j = offsets[b];
+					int end = i + Math.min(offsets[a + 1] - i, offsets[b + 1] - j);
+					for (; i < end; i++, j++) {
+						if (heap[i] != heap[j])
+							return heap[i] - heap[j];
+					}
+					return (offsets[a + 1] - offsets[a])
+							- (offsets[b + 1] - offsets[b]);
+				}
+			});
+			int[] keys = new int[distinct];
+			for (int k = 0; k < distinct; k++) {
+				keys[k] = sorted[k];
+				position[keys[k]] = k;
+			}
+			sorted = null;
+
+			// postings from keys to entries
+			int[] postingStart = new int[distinct + 1];
+			for (int id : of) {
+				if (id >= 0)
+					postingStart[position[id] + 1]++;
+			}
+			for (int k = 0; k < distinct; k++) {
+				postingStart[k + 1] += postingStart[k];
+			}
+			int[] postings = new int[postingStart[distinct]];
+			int[] fill = Arrays.copyOf(postingStart, distinct);
+			for (int e = 0; e < of.length; e++) {
+				if (of[e] >= 0)
+					postings[fill[position[of[e]]]++] = e;
+			}
+			fill = null;
+
+			// trigram postings, built from sorted (gram, key) pairs
+			Map<Long, Integer> gramIds = new HashMap<Long, Integer>();
+			int pairs = 0;
+			for (int k = 0; k < distinct; k++) {
+				int from = offsets[keys[k]];
+				int end = offsets[keys[k] + 1];
+				for (int i = from; i + NGramIndex.N <= end; i++) {
+					Long g = gram(heap, i);
+					if (!gramIds.containsKey(g))
+						gramIds.put(g, gramIds.size());
+					pairs++;
+				}
+			}
+			long[] grams = new long[gramIds.size()];
+			for (Map.Entry<Long, Integer> entry : gramIds.entrySet()) {
+				grams[entry.getValue()] = entry.getKey();
+			}
+			Arrays.sort(grams);
+			for (int g = 0; g < grams.length; g++) {
+				gramIds.put(grams[g], g);
+			}
+
+			long[] pair = new long[pairs];
+			pairs = 0;
+			for (int k = 0; k < distinct; k++) {
+				int from = offsets[keys[k]];
+				int end = offsets[keys[k] + 1];
+				for (int i = from; i + NGramIndex.N <= end; i++) {
+					pair[pairs++] = (long) gramIds.get(gram(heap, i)) << 32 | k;
+				}
+			}
+			gramIds = null;
+			Arrays.sort(pair);
+
+			int[] gramStart = new int[grams.length + 1];
+			int[] gramKeys = new int[pairs];
+			int n = 0;
+			for (int i = 0; i < pairs; i++) {
+				if (i > 0 && pair[i] == pair[i - 1])
+					continue;
+				gramStart[(int) (pair[i] >>> 32) + 1]++;
+				gramKeys[n++] = (int) pair[i];
+			}
+			for (int g = 0; g < grams.length; g++) {
+				gramStart[g + 1] += gramStart[g];
+			}
+
+			return new Column(IntBuffer.wrap(keys),
+					IntBuffer.wrap(postingStart), IntBuffer.wrap(postings),
+					LongBuffer.wrap(grams), IntBuffer.wrap(gramStart),
+					IntBuffer.wrap(Arrays.copyOf(gramKeys, n)));
+		}
+
+		/**
+		 * Retrieves the ascending positions of the keys matching a search.
+		 */
+		int[] find(CharBuffer heap, IntBuffer offsets, String term, boolean like) {
+			if (!like) {
+				int k = lowerBound(heap, offsets, term);
+				if (k < keys.limit() && compare(heap, offsets, keys.get(k), term) == 0)
+					return new int[] { k };
+				return new int[0];
+			}
+
+			if (term.indexOf('%') >= 0 || term.indexOf('_') >= 0) {
+				String pattern = "%" + term + "%";
+				int[] res = new int[keys.limit()];
+				int n = 0;
+				for (int k = 0; k < keys.limit(); k++) {
+					if (like(heap, offsets, keys.get(k), pattern))
+						res[n++] = k;
+				}
+				return Arrays.copyOf(res, n);
+			}
+
+			int[] candidates = null;
+			if (term.length() >= NGramIndex.N) {
+				char[] chars = term.toCharArray();
+				for (int i = 0; i + NGramIndex.N <= chars.length; i++) {
+					int g = binarySearch(grams, gram(chars, i));
+					if (g < 0)
+						return new int[0];
+					candidates = intersect(candidates, gramKeys,
+							gramStart.get(g), gramStart.get(g + 1));
+				}
+			}
+
+			int size = candidates == null ? keys.limit() : candidates.length;
+			int[] res = new int[size];
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				int k = candidates == null ? i : candidates[i];
+				if (contains(heap, offsets, keys.get(k), term))
+					res[n++] = k;
+			}
+			return Arrays.copyOf(res, n);
+		}
+
+		private int lowerBound(CharBuffer heap, IntBuffer offsets, String term) {
+			int lo = 0, hi = keys.limit();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (compare(heap, offsets, keys.get(mid), term) < 0)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		private static int[] intersect(int[] a, IntBuffer b, int from,
+				int to) {
+			if (a == null) {
+				int[] res = new int[to - from];
+				for (int i = 0; i < res.length; i++) {
+					res[i] = b.get(from + i);
+				}
+				return res;
+			}
+
+			int[] res = new int[Math.min(a.length, to - from)];
+			int n = 0, i = 0, j = from;
+			while (i < a.length && j < to) {
+				int bj = b.get(j);
+				if (a[i] < bj)
+					i++;
+				else if (a[i] > bj)
+					j++;
+				else {
+					res[n++] = a[i];
+					i++;
+					j++;
+				}
+			}
+			return Arrays.copyOf(res, n);
+		}
+
+		void store(ImageWriter out) throws IOException {
+			out.ints(keys);
+			out.ints(postingStart);
+			out.ints(postings);
+			out.longs(grams);
+			out.ints(gramStart);
+			out.ints(gramKeys);
+		}
+
+		static Column load(ByteBuffer image) {
+			return new Column(section(image, 4).asIntBuffer(), section(image,
+					4).asIntBuffer(), section(image, 4).asIntBuffer(),
+					section(image, 8).asLongBuffer(), section(image, 4)
+							.asIntBuffer(), section(image, 4).asIntBuffer());
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A trigram index over one column of the EnglishGerman table. Every entry is
+ * split into its (lower case) substrings of length three which are stored in a
+ * separate table together with the id of the entry. An infix search for a term
+ * of at least three characters then only has to look at those entries that
+ * contain all trigrams of the term instead of scanning the whole table.
+ *
+ * The index is maintained by <tt>SQLManager</tt>, i.e. it has to be updated
+ * whenever an entry is inserted.
+ *
+ */
+class NGramIndex {
+
+	/**
+	 * The length of the indexed substrings.
+	 */
+	static final int N = 3;
+
+	/**
+	 * The maximum number of trigrams of a search term that are intersected.
+	 * More trigrams do not narrow the candidates noticeably but make the query
+	 * more expensive.
+	 */
+	static final int MAX_GRAMS = 4;
+
+	private final String table;
+	private final String column;
+
+	private final String insertSql;
+	private final String deleteSql;
+	private final String[] exactSql = new String[2];
+	private final String[] scanSql = new String[2];
+	private final String[][] indexedSql = new String[2][MAX_GRAMS + 1];
+
+	/**
+	 * Creates a new NGramIndex over <tt>column</tt> of the EnglishGerman table
+	 * that is stored in <tt>table</tt>. Ranked searches are ordered by
+	 * <tt>rankColumn</tt>.
+	 *
+	 * @param table
+	 *            name of the table the trigrams are stored in
+	 * @param column
+	 *            name of the indexed column of EnglishGerman
+	 * @param rankColumn
+	 *            name of the column of EnglishGerman ranking the entries for
+	 *            searches on <tt>column</tt>
+	 */
+	NGramIndex(String table, String column, String rankColumn) {
+		this.table = table;
+		this.column = column;
+
+		insertSql = "INSERT OR IGNORE INTO " + table + " (gram, id) VALUES(?,?)";
+		deleteSql = "DELETE FROM " + table + " WHERE gram = ? AND id = ?";
+		String select = "SELECT english, german, type FROM EnglishGerman WHERE ";
+		String[] suffix = { "", " ORDER BY " + rankColumn + " LIMIT ?" };
+		for (int r = 0; r < 2; r++) {
+			// the first condition lets SQLite use the case-insensitive index
+			// on the column, the second keeps the match case-sensitive
+			exactSql[r] = select + column + " = ?1 COLLATE NOCASE AND "
+					+ column + " = ?1" + suffix[r];
+			scanSql[r] = select + column + " LIKE '%' || ? || '%'" + suffix[r];
+			for (int i = 1; i <= MAX_GRAMS; i++) {
+				indexedSql[r][i] = select + "id IN (" + candidatesSql(i)
+						+ ") AND " + column + " LIKE '%' || ? || '%'"
+						+ suffix[r];
+			}
+		}
+	}
+
+	/**
+	 * Creates the index table if it does not exist yet. If it did not exist,
+	 * the index is built for all entries already stored in EnglishGerman.
+	 *
+	 * @param c
+	 *            the connection to create the table in
+	 * @throws SQLException
+	 */
+	void create(Connection c) throws SQLException {
+		boolean exists;
+		PreparedStatement stmt = c
+				.prepareStatement("SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?");
+		try {
+			stmt.setString(1, table);
+			ResultSet rs = stmt.executeQuery();
+			exists = rs.next();
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+
+		Statement create = c.createStatement();
+		try {
+			create.executeUpdate("CREATE TABLE IF NOT EXISTS " + table
+					+ " (gram CHAR(3) NOT NULL, id INTEGER NOT NULL,"
+					+ " PRIMARY KEY (gram, id))");
+		} finally {
+			create.close();
+		}
+
+		if (!exists)
+			rebuild(c);
+	}
+
+	/**
+	 * Drops the index table.
+	 *
+	 * @param c
+	 *            the connection to drop the table in
+	 * @throws SQLException
+	 */
+	void drop(Connection c) throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			stmt.executeUpdate("DROP TABLE IF EXISTS " + table);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Indexes all entries of EnglishGerman. The caller is responsible for the
+	 * table being empty before.
+	 *
+	 * @param c
+	 *            the connection to the database
+	 * @throws SQLException
+	 */
+	void rebuild(Connection c) throws SQLException {
+		boolean autoCommit = c.getAutoCommit();
+		c.setAutoCommit(false);
+
+		Statement select = c.createStatement();
+		PreparedStatement insert = c.prepareStatement(insertSql());
+		try {
+			ResultSet rs = select.executeQuery("SELECT id, " + column
+					+ " FROM EnglishGerman");
+			int counter = 0;
+			while (rs.next()) {
+				add(insert, rs.getLong(1), rs.getString(2));
+				if (++counter % DictionaryImporter.BATCH_SIZE == 0)
+					insert.executeBatch();
+			}
+			rs.close();
+			insert.executeBatch();
+			c.commit();
+		} finally {
+			select.close();
+			insert.close();
+			c.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Retrieves the SQL statement that inserts a single (gram, id) pair.
+	 *
+	 * @return SQL for a statement to be used with <tt>add</tt>
+	 */
+	String insertSql() {
+		return insertSql;
+	}
+
+	/**
+	 * Adds the trigrams of <tt>text</tt> for the entry <tt>id</tt> to the
+	 * batch of <tt>insert</tt>. The caller has to execute the batch.
+	 *
+	 * @param insert
+	 *            a statement prepared from <tt>insertSql()</tt>
+	 * @param id
+	 *            the id of the entry in EnglishGerman
+	 * @param text
+	 *            the indexed value of the entry
+	 * @throws SQLException
+	 */
+	void add(PreparedStatement insert, long id, String text)
+			throws SQLException {
+		if (text == null)
+			return;
+
+		for (String gram : grams(text)) {
+			insert.setString(1, gram);
+			insert.setLong(2, id);
+			insert.addBatch();
+		}
+	}
+
+	/**
+	 * Retrieves the SQL statement that deletes a single (gram, id) pair.
+	 *
+	 * @return SQL for a statement to be used with <tt>remove</tt>
+	 */
+	String deleteSql() {
+		return deleteSql;
+	}
+
+	/**
+	 * Adds the removal of the trigrams of <tt>text</tt> for the entry
+	 * <tt>id</tt> to the batch of <tt>delete</tt>. The caller has to execute
+	 * the batch.
+	 *
+	 * @param delete
+	 *            a statement prepared from <tt>deleteSql()</tt>
+	 * @param id
+	 *            the id of the removed entry
+	 * @param text
+	 *            the indexed value of the entry
+	 * @throws SQLException
+	 */
+	void remove(PreparedStatement delete, long id, String text)
+			throws SQLException {
+		// both statements take the same parameters
+		add(delete, id, text);
+	}
+
+	/**
+	 * Determines if an infix search for <tt>term</tt> can be answered by the
+	 * index. This is not the case for terms shorter than <tt>N</tt> and terms
+	 * containing the LIKE wildcards '%' and '_'.
+	 *
+	 * @param term
+	 *            the search term
+	 * @return true if the index can be used for <tt>term</tt>
+	 */
+	static boolean supports(String term) {
+		return term.length() >= N && term.indexOf('%') < 0
+				&& term.indexOf('_') < 0;
+	}
+
+	/**
+	 * Retrieves the trigrams of <tt>term</tt> used for a search, at most
+	 * <tt>MAX_GRAMS</tt> of them spread over the whole term.
+	 *
+	 * @param term
+	 *            a search term supported by the index
+	 * @return the trigrams to look up
+	 */
+	static String[] searchGrams(String term) {
+		Set<String> all = grams(term);
+		String[] grams = all.toArray(new String[all.size()]);
+		if (grams.length <= MAX_GRAMS)
+			return grams;
+
+		String[] res = new String[MAX_GRAMS];
+		for (int i = 0; i < MAX_GRAMS; i++) {
+			res[i] = grams[i * (grams.length - 1) / (MAX_GRAMS - 1)];
+		}
+		return res;
+	}
+
+	/**
+	 * Retrieves the SQL statement that selects all entries whose indexed
+	 * column equals the first parameter. A ranked statement has a second
+	 * parameter limiting the number of entries, which are selected in order of
+	 * their rank.
+	 *
+	 * @param ranked
+	 *            true for a ranked statement
+	 * @return SQL selecting english, german and type
+	 */
+	String exactSql(boolean ranked) {
+		return exactSql[ranked ? 1 : 0];
+	}
+
+	/**
+	 * Retrieves the SQL statement that selects all entries whose indexed
+	 * column contains the first parameter without using the index. A ranked
+	 * statement has a second parameter limiting the number of entries, which
+	 * are selected in order of their rank.
+	 *
+	 * @param ranked
+	 *            true for a ranked statement
+	 * @return SQL selecting english, german and type
+	 */
+	String scanSql(boolean ranked) {
+		return scanSql[ranked ? 1 : 0];
+	}
+
+	/**
+	 * Retrieves the SQL statement that selects all entries whose indexed
+	 * column contains a term using <tt>count</tt> of its trigrams. The first
+	 * <tt>count</tt> parameters are the trigrams, the next one is the term. A
+	 * ranked statement has another parameter limiting the number of entries,
+	 * which are selected in order of their rank.
+	 *
+	 * @param count
+	 *            the number of trigrams, between 1 and <tt>MAX_GRAMS</tt>
+	 * @param ranked
+	 *            true for a ranked statement
+	 * @return SQL selecting english, german and type
+	 */
+	String indexedSql(int count, boolean ranked) {
+		return indexedSql[ranked ? 1 : 0][count];
+	}
+
+	private String candidatesSql(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				sb.append(" INTERSECT ");
+			sb.append("SELECT id FROM ").append(table).append(" WHERE gram = ?");
+		}
+		return sb.toString();
+	}
+
+	private static Set<String> grams(String text) {
+		char[] chars = text.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(chars[i]);
+		}
+
+		Set<String> res = new LinkedHashSet<String>();
+		for (int i = 0; i + N <= chars.length; i++) {
+			res.add(new String(chars, i, N));
+		}
+		return res;
+	}
+}
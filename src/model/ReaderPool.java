@@ -0,0 +1,115 @@
+package model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * A bounded pool of read-only connections to a database in WAL journal mode.
+ * In WAL mode readers neither block each other nor the single writer, so
+ * lookups can run in parallel with each other and with imports.
+ *
+ * Every connection keeps its own <tt>StatementCache</tt>. A connection handed
+ * out by <tt>acquire</tt> belongs to the calling thread until it is given back
+ * by <tt>release</tt>.
+ *
+ */
+class ReaderPool {
+
+	private final List<StatementCache> all;
+	private final BlockingQueue<StatementCache> idle;
+
+	/**
+	 * Opens <tt>size</tt> read-only connections to the database given by
+	 * <tt>url</tt>.
+	 *
+	 * @param url
+	 *            JDBC url of the database
+	 * @param size
+	 *            the number of connections, must be greater than 0
+	 * @throws SQLException
+	 *             if a connection could not be opened
+	 */
+	ReaderPool(String url, int size) throws SQLException {
+		all = new ArrayList<StatementCache>(size);
+		idle = new ArrayBlockingQueue<StatementCache>(size);
+
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		try {
+			for (int i = 0; i < size; i++) {
+				StatementCache reader = new StatementCache(
+						config.createConnection(url));
+				all.add(reader);
+				idle.add(reader);
+			}
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Takes a connection from the pool, waiting until one is available.
+	 *
+	 * @return a connection that must be given back by <tt>release</tt>
+	 */
+	StatementCache acquire() {
+		try {
+			return idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("InterruptedException occured:\n"
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Gives a connection back to the pool.
+	 *
+	 * @param reader
+	 *            a connection retrieved by <tt>acquire</tt>
+	 */
+	void release(StatementCache reader) {
+		idle.add(reader);
+	}
+
+	/**
+	 * Closes the cached statements of all connections. The caller must make
+	 * sure that no connection is in use.
+	 *
+	 * @throws SQLException
+	 */
+	void clear() throws SQLException {
+		for (StatementCache reader : all) {
+			reader.clear();
+		}
+	}
+
+	/**
+	 * Closes all connections. The caller must make sure that no connection is
+	 * in use.
+	 *
+	 * @throws SQLException
+	 */
+	void close() throws SQLException {
+		SQLException first = null;
+		for (StatementCache reader : all) {
+			try {
+				reader.close();
+			} catch (SQLException e) {
+				if (first == null)
+					first = e;
+			}
+		}
+		all.clear();
+		idle.clear();
+
+		if (first != null)
+			throw first;
+	}
+}
@@ -1,18 +1,43 @@
 package model;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.StringTokenizer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 /**
  * This class is used to get access to a vocabulary database using sqlite.
  * 
+ * By default a single connection is used for all reads and writes. If a
+ * number of readers is given, the database is opened in WAL journal mode with
+ * one writer connection and a pool of read-only connections, so searches run
+ * in parallel with each other and with imports.
+ * 
+ * The connections to the current database are held by an immutable
+ * <tt>Database</tt>, which is replaced as a whole when the database is
+ * switched.
+ * 
  * @author Sebastian Brockmeyer
  * 
  */
@@ -21,24 +46,304 @@ public class SQLManager {
 	private static String sqliteDriver = "org.sqlite.JDBC";
 	private static String pathPraefix = "jdbc:sqlite:";
 
-	private String databasePath;
-	private Connection connection = null;
+	private static final String insertSql = "INSERT OR IGNORE INTO EnglishGerman (english,german,type,englishRank,germanRank,hash) VALUES(?,?,?,?,?,?);";
+	private static final String lastInsertIdSql = "SELECT last_insert_rowid()";
+	private static final String selectByHashSql = "SELECT id, english, german, type FROM EnglishGerman WHERE hash = ?";
+	private static final String deleteSql = "DELETE FROM EnglishGerman WHERE id = ?";
+	private static final String deltaVersionSql = "SELECT ifnull(max(version), 0) FROM AppliedDelta";
+	private static final String appliedDeltaSql = "INSERT INTO AppliedDelta (version) VALUES(?)";
+
+	private static final Comparator<String[]> englishOrder = new Comparator<String[]>() {
+
+		@Override
+		public int compare(String[] arg0, String[] arg1) {
+			int len0 = arg0[0].length();
+			if (arg0[2].equals("verb") && arg0[0].startsWith("to "))
+				len0 -= 3;
+			int len1 = arg1[0].length();
+			if (arg1[2].equals("verb") && arg1[0].startsWith("to "))
+				len1 -= 3;
+
+			if (len0 != len1)
+				return len0 - len1;
+
+			return arg0[1].length() - arg1[1].length();
+		}
+
+	};
+
+	private static final Comparator<String[]> germanOrder = new Comparator<String[]>() {
+
+		@Override
+		public int compare(String[] arg0, String[] arg1) {
+			int diff = arg0[0].length() - arg1[0].length();
+			if (diff != 0)
+				return diff;
+
+			return arg0[1].length() - arg1[1].length();
+		}
+
+	};
+
+	private final int readerCount;
+	private final ReadWriteLock readersLock = new ReentrantReadWriteLock();
+	private final ExecutorService lookups;
+
+	private volatile Database database = null;
+	private boolean closed = false;
+
+	private final LookupCache cache = new LookupCache(
+			LookupCache.DEFAULT_CAPACITY);
+	private volatile MemoryDictionary memory = null;
+	private volatile FuzzyIndex englishFuzzy = null;
+	private volatile FuzzyIndex germanFuzzy = null;
+
+	private final NGramIndex englishIndex = new NGramIndex("EnglishNGram",
+			"english", "englishRank");
+	private final NGramIndex germanIndex = new NGramIndex("GermanNGram",
+			"german", "germanRank");
+	private final LemmaIndex englishLemma = new LemmaIndex("EnglishLemma",
+			"english", "englishRank");
+	private final LemmaIndex germanLemma = new LemmaIndex("GermanLemma",
+			"german", "germanRank");
+
+	/**
+	 * Computes the rank of an entry in searches for English words. Entries
+	 * with a lower rank are shown first, i.e. short English words (not
+	 * counting the "to " of verbs) and then short German meanings. This is the
+	 * SQL equivalent of <tt>englishOrder</tt>.
+	 */
+	private static final String englishRankSql = "(length(english) - CASE WHEN type = 'verb' AND substr(english, 1, 3) = 'to ' THEN 3 ELSE 0 END) * "
+			+ SearchResult.RANK_FACTOR
+			+ " + min(length(german), "
+			+ (SearchResult.RANK_FACTOR - 1) + ")";
+
+	/**
+	 * Computes the rank of an entry in searches for German words. This is the
+	 * SQL equivalent of <tt>germanOrder</tt>.
+	 */
+	private static final String germanRankSql = "length(german) * "
+			+ SearchResult.RANK_FACTOR + " + min(length(english), "
+			+ (SearchResult.RANK_FACTOR - 1) + ")";
+
+	/**
+	 * Computes the rank of an entry in searches for English words like
+	 * <tt>englishRankSql</tt> does.
+	 */
+	static int englishRank(String english, String german, String type) {
+		int len = english == null ? 0 : english.length();
+		if ("verb".equals(type) && english.startsWith("to "))
+			len -= 3;
+		return len * SearchResult.RANK_FACTOR
+				+ Math.min(german == null ? 0 : german.length(),
+						SearchResult.RANK_FACTOR - 1);
+	}
+
+	/**
+	 * Computes the rank of an entry in searches for German words like
+	 * <tt>germanRankSql</tt> does.
+	 */
+	static int germanRank(String english, String german) {
+		return (german == null ? 0 : german.length()) * SearchResult.RANK_FACTOR
+				+ Math.min(english == null ? 0 : english.length(),
+						SearchResult.RANK_FACTOR - 1);
+	}
+
+	/**
+	 * Computes the content hash of an entry, a 64 bit FNV-1a hash of its three
+	 * columns. The hash is unique within the database, so an entry with the
+	 * same english, german and type is not inserted twice. Null and empty
+	 * columns have different hashes.
+	 */
+	static long contentHash(String english, String german, String type) {
+		long hash = 0xcbf29ce484222325L;
+		for (String column : new String[] { english, german, type }) {
+			if (column == null) {
+				hash = (hash ^ 0xfffe) * 0x100000001b3L;
+			} else {
+				for (int i = 0; i < column.length(); i++) {
+					hash = (hash ^ column.charAt(i)) * 0x100000001b3L;
+				}
+			}
+			// separates the columns, no char of a string is 0xffff
+			hash = (hash ^ 0xffff) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * The version of the schema created by this class. It is stored in the
+	 * user_version pragma of the database, which is 0 for new databases and
+	 * those created before the schema was versioned.
+	 */
+	static final int SCHEMA_VERSION = 8;
 
-	private void createTable(Connection c) {
-		String create = "CREATE TABLE IF NOT EXISTS EnglishGerman "
-				+ "(id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
-				+ "english	VARCHAR(250)," + "german		VARCHAR(250),"
-				+ "type		VARCHAR(20))";
+	/**
+	 * Upgrades the schema of the database from <tt>version</tt> to
+	 * <tt>SCHEMA_VERSION</tt>. Every step is committed together with the new
+	 * version, so an interrupted upgrade continues where it stopped.
+	 */
+	private void upgrade(Connection c, int version) throws SQLException {
+		if (version > SCHEMA_VERSION)
+			throw new SQLException("The database has schema version "
+					+ version + ", but only versions up to " + SCHEMA_VERSION
+					+ " are supported");
 
-		PreparedStatement stmt = null;
+		boolean autoCommit = c.getAutoCommit();
+		c.setAutoCommit(false);
 		try {
-			stmt = c.prepareStatement(create);
-			stmt.executeUpdate();
-			stmt.close();
+			while (version < SCHEMA_VERSION) {
+				migrate(c, version);
+				version++;
+				DictionaryImporter.setPragma(c, "user_version", version);
+				c.commit();
+			}
 		} catch (SQLException e) {
-			e.printStackTrace();
-			throw new RuntimeException("SQLException occured:\n"
-					+ e.getMessage());
+			c.rollback();
+			throw e;
+		} finally {
+			c.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Migrates the schema from <tt>version</tt> to <tt>version + 1</tt>. The
+	 * steps must not fail on databases created before the schema was
+	 * versioned, which may already contain their tables and columns.
+	 */
+	private void migrate(Connection c, int version) throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			switch (version) {
+			case 0:
+				stmt.executeUpdate("CREATE TABLE IF NOT EXISTS EnglishGerman "
+						+ "(id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
+						+ "english	VARCHAR(250)," + "german		VARCHAR(250),"
+						+ "type		VARCHAR(20))");
+				englishIndex.create(c);
+				germanIndex.create(c);
+				break;
+			case 1:
+				addRankColumns(c);
+				stmt.executeUpdate("CREATE INDEX IF NOT EXISTS EnglishRankIndex ON EnglishGerman (englishRank)");
+				stmt.executeUpdate("CREATE INDEX IF NOT EXISTS GermanRankIndex ON EnglishGerman (germanRank)");
+				break;
+			case 2:
+				// exact searches are answered from these indexes alone, in
+				// the order of the rank
+				stmt.executeUpdate("CREATE INDEX IF NOT EXISTS EnglishIndex ON EnglishGerman "
+						+ "(english COLLATE NOCASE, englishRank, german, type)");
+				stmt.executeUpdate("CREATE INDEX IF NOT EXISTS GermanIndex ON EnglishGerman "
+						+ "(german COLLATE NOCASE, germanRank, english, type)");
+				break;
+			case 3:
+				englishLemma.create(c);
+				germanLemma.create(c);
+				break;
+			case 4:
+				addHashColumn(c);
+				stmt.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS HashIndex ON EnglishGerman (hash)");
+				break;
+			case 5:
+				stmt.executeUpdate("CREATE TABLE IF NOT EXISTS AppliedDelta "
+						+ "(version INTEGER PRIMARY KEY NOT NULL,"
+						+ "applied TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+				break;
+			case 6:
+				// counts every change of the entries, starting at a random
+				// value, so an in-memory copy can tell if it is up to date
+				// even after the table has been truncated
+				stmt.executeUpdate("CREATE TABLE IF NOT EXISTS DictionaryGeneration "
+						+ "(generation INTEGER NOT NULL)");
+				stmt.executeUpdate("DELETE FROM DictionaryGeneration");
+				stmt.executeUpdate("INSERT INTO DictionaryGeneration (generation) VALUES(random())");
+				for (String event : new String[] { "INSERT", "DELETE", "UPDATE" }) {
+					stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS EnglishGerman"
+							+ event + " AFTER " + event + " ON EnglishGerman BEGIN "
+							+ "UPDATE DictionaryGeneration SET generation = generation + 1; END");
+				}
+				break;
+			case 7:
+				// Inflections generates fewer forms, the others are dropped
+				englishLemma.drop(c);
+				germanLemma.drop(c);
+				englishLemma.create(c);
+				germanLemma.create(c);
+				break;
+			default:
+				throw new IllegalStateException("unknown schema version "
+						+ version);
+			}
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Adds the rank columns to a table created before they existed.
+	 */
+	private void addRankColumns(Connection c) throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			boolean found = false;
+			ResultSet rs = stmt.executeQuery("PRAGMA table_info(EnglishGerman)");
+			while (rs.next()) {
+				if (rs.getString("name").equals("englishRank"))
+					found = true;
+			}
+			rs.close();
+			if (found)
+				return;
+
+			stmt.executeUpdate("ALTER TABLE EnglishGerman ADD COLUMN englishRank INTEGER");
+			stmt.executeUpdate("ALTER TABLE EnglishGerman ADD COLUMN germanRank INTEGER");
+			stmt.executeUpdate("UPDATE EnglishGerman SET englishRank = "
+					+ englishRankSql + ", germanRank = " + germanRankSql);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Adds the content hash column and removes the entries stored more than
+	 * once, keeping the oldest of them.
+	 */
+	private void addHashColumn(Connection c) throws SQLException {
+		Statement stmt = c.createStatement();
+		PreparedStatement update = null;
+		try {
+			stmt.executeUpdate("ALTER TABLE EnglishGerman ADD COLUMN hash INTEGER");
+			update = c
+					.prepareStatement("UPDATE EnglishGerman SET hash = ? WHERE id = ?");
+
+			ResultSet rs = stmt
+					.executeQuery("SELECT id, english, german, type FROM EnglishGerman");
+			int counter = 0;
+			while (rs.next()) {
+				update.setLong(1, contentHash(rs.getString(2),
+						rs.getString(3), rs.getString(4)));
+				update.setLong(2, rs.getLong(1));
+				update.addBatch();
+				if (++counter % DictionaryImporter.BATCH_SIZE == 0)
+					update.executeBatch();
+			}
+			rs.close();
+			update.executeBatch();
+
+			int removed = stmt
+					.executeUpdate("DELETE FROM EnglishGerman WHERE id NOT IN "
+							+ "(SELECT min(id) FROM EnglishGerman GROUP BY hash)");
+			if (removed > 0) {
+				for (String table : new String[] { "EnglishNGram",
+						"GermanNGram", "EnglishLemma", "GermanLemma" }) {
+					stmt.executeUpdate("DELETE FROM " + table
+							+ " WHERE id NOT IN (SELECT id FROM EnglishGerman)");
+				}
+			}
+		} finally {
+			stmt.close();
+			if (update != null)
+				update.close();
 		}
 	}
 
@@ -51,6 +356,34 @@ public class SQLManager {
 	 *            path to the database
 	 */
 	public SQLManager(String databasePath) {
+		this(databasePath, 0);
+	}
+
+	/**
+	 * Creates a new SQLManager with a connection to the database given by
+	 * <tt>databasePath</tt>. If the given file does not exist, it will be
+	 * created. If <tt>readers</tt> is greater than 0, the database is opened in
+	 * WAL journal mode and searches are run on a pool of <tt>readers</tt>
+	 * read-only connections.
+	 * 
+	 * @param databasePath
+	 *            path to the database
+	 * @param readers
+	 *            the number of read-only connections, 0 to use a single
+	 *            connection
+	 */
+	public SQLManager(String databasePath, int readers) {
+		if (readers < 0)
+			throw new IllegalArgumentException(
+					"The number of readers must not be negative!");
+		this.readerCount = readers;
+		this.lookups = newLookupExecutor(Math.max(1, readers));
+
+		loadDriver();
+		switchDatabase(databasePath);
+	}
+
+	private static void loadDriver() {
 		try {
 			Class.forName(sqliteDriver);
 		} catch (ClassNotFoundException e) {
@@ -58,8 +391,48 @@ public class SQLManager {
 			throw new RuntimeException("ClassNotFoundException occured:\n"
 					+ e.getMessage());
 		}
-		
-		switchDatabase(databasePath);
+	}
+
+	/**
+	 * Opens a connection to the sqlite database given by
+	 * <tt>databasePath</tt>. If the given file does not exist, it will be
+	 * created.
+	 * 
+	 * @param databasePath
+	 *            path to the database
+	 * @return the new connection
+	 * @throws SQLException
+	 */
+	static Connection connect(String databasePath) throws SQLException {
+		loadDriver();
+		return DriverManager.getConnection(pathPraefix + databasePath);
+	}
+
+	/**
+	 * Creates the executor running asynchronous searches. Virtual threads are
+	 * used if the runtime supports them, otherwise a pool of <tt>threads</tt>
+	 * daemon threads. More platform threads than readers would only wait for
+	 * a free reader.
+	 */
+	private static ExecutorService newLookupExecutor(int threads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// no virtual threads before Java 21
+		}
+
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SQLManager-lookup-"
+						+ counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 	}
 
 	/**
@@ -68,49 +441,213 @@ public class SQLManager {
 	 * @return path to database
 	 */
 	public String getDatabasePath() {
-		return databasePath;
+		return database.getPath();
 	}
 
 	/**
-	 * Closes the connection to the old database and connects to the database
-	 * given by <tt>databasePath</tt> instead. If the given file does not exist,
-	 * it will be created.
+	 * Connects to the database given by <tt>databasePath</tt> instead of the
+	 * current one. If the given file does not exist, it will be created.
+	 * Databases with an older schema are upgraded in place.
+	 * 
+	 * The new database is opened and upgraded before it replaces the old one
+	 * in a single step. Searches running on a pool of readers are not blocked
+	 * by the switch: they finish on the old database, which is closed as soon
+	 * as the last of them is done, while searches started after the switch
+	 * use the new database.
 	 * 
 	 * @param databasePath
 	 *            path to the new database
 	 */
 	public void switchDatabase(String databasePath) {
+		Database next;
 		try {
-			this.databasePath = databasePath;
-			if (connection != null)
-				connection.close();
-
-			connection = DriverManager
-					.getConnection(pathPraefix + databasePath);
-			createTable(connection);
+			next = open(databasePath);
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("SQLExeption occured:\n"
 					+ e.getMessage());
 		}
+
+		Database old;
+		synchronized (this) {
+			old = database;
+			database = next;
+			invalidate();
+		}
+		if (old != null)
+			release(old);
+	}
+
+	/**
+	 * Opens the database given by <tt>databasePath</tt> and upgrades its
+	 * schema.
+	 */
+	private Database open(String databasePath) throws SQLException {
+		StatementCache writer = new StatementCache(connect(databasePath));
+		ReaderPool pool = null;
+		try {
+			Connection c = writer.getConnection();
+			if (readerCount > 0)
+				enableWal(c);
+			upgrade(c, DictionaryImporter.pragma(c, "user_version"));
+
+			if (readerCount > 0)
+				pool = new ReaderPool(pathPraefix + databasePath, readerCount);
+		} catch (SQLException e) {
+			writer.close();
+			throw e;
+		}
+		return new Database(databasePath, writer, pool);
+	}
+
+	/**
+	 * Retains the current database for a search, so it is not closed before
+	 * the search is done.
+	 */
+	private Database acquire() {
+		while (true) {
+			Database d = database;
+			if (d.retain())
+				return d;
+			// only a database that is still current can have been closed by
+			// close()
+			if (d == database)
+				throw new IllegalStateException(
+						"The SQLManager has been closed!");
+		}
+	}
+
+	/**
+	 * Releases a database retained by <tt>acquire</tt> or the reference of
+	 * this SQLManager to a replaced database.
+	 */
+	private static void release(Database d) {
+		try {
+			d.release();
+		} catch (SQLException e) {
+			// the database is not used anymore
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Discards everything derived from the contents of the database, i.e. the
+	 * cached search results and the in-memory dictionary.
+	 */
+	private void invalidate() {
+		memory = null;
+		englishFuzzy = null;
+		germanFuzzy = null;
+		cache.clear();
+	}
+
+	/**
+	 * Switches the database of <tt>c</tt> to WAL journal mode, so readers do
+	 * not block the writer and commits only append to the log.
+	 */
+	static void enableWal(Connection c) throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("PRAGMA journal_mode=WAL");
+			rs.close();
+		} finally {
+			stmt.close();
+		}
 	}
 
 	/**
 	 * Truncates the database, i.e. the table isn't dropped but it's contents
 	 * are deleted.
 	 */
-	public void truncate() {
+	public synchronized void truncate() {
+		readersLock.writeLock().lock();
 		try {
+			StatementCache statements = database.getWriter();
+			Connection connection = statements.getConnection();
+			statements.clear();
+			if (database.getReaders() != null)
+				database.getReaders().clear();
+
 			String truncate = "DROP TABLE EnglishGerman";
 			Statement stmt = connection.createStatement();
 			stmt.executeUpdate(truncate);
+			// the versions of applied deltas are meaningless without their
+			// entries
+			stmt.executeUpdate("DROP TABLE IF EXISTS AppliedDelta");
 			stmt.close();
-			createTable(connection);
+			englishIndex.drop(connection);
+			germanIndex.drop(connection);
+			englishLemma.drop(connection);
+			germanLemma.drop(connection);
+			upgrade(connection, 0);
+			invalidate();
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("SQLExeption occured:\n"
 					+ e.getMessage());
+		} finally {
+			readersLock.writeLock().unlock();
+		}
+	}
+
+	private long lastInsertId() throws SQLException {
+		ResultSet rs = database.getWriter().prepare(lastInsertIdSql)
+				.executeQuery();
+		try {
+			rs.next();
+			return rs.getLong(1);
+		} finally {
+			rs.close();
+		}
+	}
+
+	private void indexEntry(long id, String english, String german,
+			String type) throws SQLException {
+		StatementCache statements = database.getWriter();
+		PreparedStatement stmt = statements.prepare(englishIndex.insertSql());
+		englishIndex.add(stmt, id, english);
+		stmt.executeBatch();
+
+		stmt = statements.prepare(germanIndex.insertSql());
+		germanIndex.add(stmt, id, german);
+		stmt.executeBatch();
+
+		stmt = statements.prepare(englishLemma.insertSql());
+		englishLemma.add(stmt, id, english, type);
+		stmt.executeBatch();
+
+		stmt = statements.prepare(germanLemma.insertSql());
+		germanLemma.add(stmt, id, german, type);
+		stmt.executeBatch();
+	}
+
+	/**
+	 * Retrieves the SELECT statement for a search on the column indexed by
+	 * <tt>index</tt>. Infix searches use the trigram index if possible, so the
+	 * table does not have to be scanned. If <tt>limit</tt> is greater than 0,
+	 * at most <tt>limit</tt> entries are selected in order of their rank.
+	 */
+	private static PreparedStatement prepareSearch(StatementCache statements,
+			NGramIndex index, String term, boolean like, int limit)
+			throws SQLException {
+		boolean ranked = limit > 0;
+		PreparedStatement stmt;
+		int param = 1;
+		if (!like) {
+			stmt = statements.prepare(index.exactSql(ranked));
+		} else if (!NGramIndex.supports(term)) {
+			stmt = statements.prepare(index.scanSql(ranked));
+		} else {
+			String[] grams = NGramIndex.searchGrams(term);
+			stmt = statements.prepare(index.indexedSql(grams.length, ranked));
+			for (String gram : grams) {
+				stmt.setString(param++, gram);
+			}
 		}
+		stmt.setString(param++, term);
+		if (ranked)
+			stmt.setInt(param, limit);
+		return stmt;
 	}
 
 	/**
@@ -122,18 +659,39 @@ public class SQLManager {
 	 *            German meaning of the vocabulary
 	 * @param type
 	 *            the type of the word, e.g. noun
-	 * @return true if the new entry could be inserted, false otherwise
+	 * @return true if the new entry could be inserted, false otherwise, e.g.
+	 *         if the database already contains the same entry
 	 */
 	public boolean insertEntry(String english, String german, String type) {
+		return insertEntry(english, german, type, null);
+	}
+
+	/**
+	 * Inserts a new entry into the database like <tt>insertEntry(english,
+	 * german, type)</tt>. If the entry is not inserted because a different
+	 * entry with the same content hash is stored, <tt>listener</tt> is told
+	 * about the collision like during an import.
+	 * 
+	 * @param english
+	 *            English meaning of the vocabulary
+	 * @param german
+	 *            German meaning of the vocabulary
+	 * @param type
+	 *            the type of the word, e.g. noun
+	 * @param listener
+	 *            the listener told about a collision, may be null
+	 * @return true if the new entry could be inserted, false otherwise, e.g.
+	 *         if the database already contains the same entry
+	 */
+	public synchronized boolean insertEntry(String english, String german,
+			String type, ImportListener listener) {
 		boolean res = false;
 		try {
-			String insert = "INSERT INTO EnglishGerman (english,german,type) VALUES(?,?,?);";
-			PreparedStatement stmt = connection.prepareStatement(insert);
-			stmt.setString(1, english);
-			stmt.setString(2, german);
-			stmt.setString(3, type);
-			res = stmt.executeUpdate() == 1;
-			stmt.close();
+			res = insert(english, german, type);
+			if (res)
+				invalidate();
+			else if (listener != null && collides(english, german, type))
+				listener.collision(english, german, type);
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("SQLExeption occured:\n"
@@ -144,136 +702,410 @@ public class SQLManager {
 	}
 
 	/**
-	 * Inserts entries from a text file given by <tt>path</tt>. The text file
-	 * must have the following scheme: 1) a line beginning with '#' will be
-	 * ignored 2) any other line must begin with an English word, followed by a
-	 * '\t' and the German meaning and then (optionally) followed by another
-	 * '\t' and the word type.
-	 * 
-	 * @param path
-	 *            the path to the text file
-	 * @return the number of inserted entries
-	 * @throws FileNotFoundException
-	 *             if the file given by <tt>path</tt> was not found
+	 * Inserts and indexes an entry unless it is already stored.
 	 */
-	public int insertEntriesFromFile(String path) throws FileNotFoundException {
-		BufferedReader r = new BufferedReader(new FileReader(path));
+	private boolean insert(String english, String german, String type)
+			throws SQLException {
+		PreparedStatement stmt = database.getWriter().prepare(insertSql);
+		stmt.setString(1, english);
+		stmt.setString(2, german);
+		stmt.setString(3, type);
+		stmt.setInt(4, englishRank(english, german, type));
+		stmt.setInt(5, germanRank(english, german));
+		stmt.setLong(6, contentHash(english, german, type));
+		if (stmt.executeUpdate() != 1)
+			return false;
+
+		indexEntry(lastInsertId(), english, german, type);
+		return true;
+	}
 
-		int counter = 0;
+	/**
+	 * Retrieves the stored entry with the content hash of the given entry.
+	 * 
+	 * @return {id, english, german, type} of the stored entry or null if no
+	 *         entry has the hash
+	 */
+	private String[] byHash(String english, String german, String type)
+			throws SQLException {
+		PreparedStatement stmt = database.getWriter().prepare(selectByHashSql);
+		stmt.setLong(1, contentHash(english, german, type));
+		ResultSet rs = stmt.executeQuery();
 		try {
-			connection.setAutoCommit(false);
+			if (!rs.next())
+				return null;
+			return new String[] { rs.getString(1), rs.getString(2),
+					rs.getString(3), rs.getString(4) };
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Determines if a different entry with the same content hash as the given
+	 * entry is stored.
+	 */
+	private boolean collides(String english, String german, String type)
+			throws SQLException {
+		String[] stored = byHash(english, german, type);
+		return stored != null && !matches(stored, english, german, type);
+	}
+
+	private static boolean matches(String[] stored, String english,
+			String german, String type) {
+		return equal(english, stored[1]) && equal(german, stored[2])
+				&& equal(type, stored[3]);
+	}
 
-			String insert = "INSERT INTO EnglishGerman (english,german,type) VALUES(?,?,?);";
-			PreparedStatement stmt = connection.prepareStatement(insert);
-			String line = null;
-			while ((line = r.readLine()) != null) {
-				if (line.length() == 0 || line.charAt(0) == '#')
-					continue;
+	/**
+	 * Deletes an entry and its index rows if it is stored.
+	 */
+	private boolean delete(String english, String german, String type)
+			throws SQLException {
+		StatementCache statements = database.getWriter();
+		String[] stored = byHash(english, german, type);
+		// the hash column is UNIQUE, so a colliding entry was not stored;
+		// compare the fields
+		if (stored == null || !matches(stored, english, german, type))
+			return false;
+		long id = Long.parseLong(stored[0]);
 
-				StringTokenizer tok = new StringTokenizer(line, "\t");
-				if (!tok.hasMoreTokens())
-					continue;
-				String english = tok.nextToken();
+		PreparedStatement stmt = statements.prepare(deleteSql);
+		stmt.setLong(1, id);
+		stmt.executeUpdate();
 
-				if (!tok.hasMoreTokens())
-					continue;
-				String german = tok.nextToken();
+		stmt = statements.prepare(englishIndex.deleteSql());
+		englishIndex.remove(stmt, id, english);
+		stmt.executeBatch();
 
-				String type = "";
-				if (tok.hasMoreTokens())
-					type = tok.nextToken();
+		stmt = statements.prepare(germanIndex.deleteSql());
+		germanIndex.remove(stmt, id, german);
+		stmt.executeBatch();
 
-				stmt.setString(1, english);
-				stmt.setString(2, german);
-				stmt.setString(3, type);
+		stmt = statements.prepare(englishLemma.deleteSql());
+		englishLemma.remove(stmt, id, english, type);
+		stmt.executeBatch();
 
-				counter += stmt.executeUpdate();
-				stmt.close();
-			}
+		stmt = statements.prepare(germanLemma.deleteSql());
+		germanLemma.remove(stmt, id, german, type);
+		stmt.executeBatch();
+		return true;
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Applies the delta file given by <tt>path</tt> to the database. A delta
+	 * file starts with a line "#delta &lt;base&gt; &lt;version&gt;", followed
+	 * by lines of entries like the files read by
+	 * <tt>insertEntriesFromFile</tt>, each prefixed with "+\t" for an added or
+	 * "-\t" for a removed entry.
+	 * 
+	 * The removed entries are deleted first, then the added entries are
+	 * inserted, all in one transaction together with the new version. So
+	 * either the whole delta is applied or nothing is changed. Applying a
+	 * delta that has already been applied does nothing.
+	 * 
+	 * @param path
+	 *            the path to the delta file
+	 * @return the number of removed and added entries, not counting removed
+	 *         entries that were not stored and added entries that were
+	 *         already stored
+	 * @throws FileNotFoundException
+	 *             if the file given by <tt>path</tt> was not found
+	 * @throws IllegalStateException
+	 *             if the delta does not apply to the version of the database
+	 */
+	public synchronized int applyDelta(String path)
+			throws FileNotFoundException {
+		Delta delta;
+		try {
+			delta = Delta.read(path);
+		} catch (FileNotFoundException e) {
+			throw e;
 		} catch (IOException e) {
 			e.printStackTrace();
 			throw new RuntimeException("IOException occured:\n"
 					+ e.getMessage());
-		} catch (SQLException e) {
-			e.printStackTrace();
-			throw new RuntimeException("SQLException occured:\n"
-					+ e.getMessage());
-		} finally {
+		}
+
+		Connection connection = database.getWriter().getConnection();
+		try {
+			int current = deltaVersion();
+			if (current == delta.getVersion())
+				return 0;
+			if (current != delta.getBase())
+				throw new IllegalStateException("The delta " + path
+						+ " updates version " + delta.getBase()
+						+ ", but the database has version " + current + "!");
+
+			connection.setAutoCommit(false);
+			boolean success = false;
 			try {
-				r.close();
+				int changed = 0;
+				for (String[] entry : delta.getRemoved()) {
+					if (delete(entry[0], entry[1], entry[2]))
+						changed++;
+				}
+				for (String[] entry : delta.getAdded()) {
+					if (insert(entry[0], entry[1], entry[2]))
+						changed++;
+				}
+
+				PreparedStatement stmt = database.getWriter().prepare(
+						appliedDeltaSql);
+				stmt.setInt(1, delta.getVersion());
+				stmt.executeUpdate();
+
 				connection.commit();
+				success = true;
+				return changed;
+			} finally {
+				if (!success)
+					connection.rollback();
 				connection.setAutoCommit(true);
-			} catch (SQLException e) {
-				e.printStackTrace();
-				throw new RuntimeException("SQLException occured:\n"
-						+ e.getMessage());
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw new RuntimeException("IOException occured:\n"
-						+ e.getMessage());
+				invalidate();
 			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
 		}
-
-		return counter;
 	}
 
 	/**
-	 * Searches for an English word and returns a list of entries matching that
-	 * word.
+	 * Retrieves the version of the last delta applied by <tt>applyDelta</tt>.
 	 * 
-	 * @param english
-	 *            the word to be searched for
-	 * @param like
-	 *            if true, the SQL query uses 'LIKE'
-	 * @return a list of String triples {english, german, type} where english
-	 *         matches the parameter <tt>english</tt>
+	 * @return the version of the database, 0 if no delta has been applied
 	 */
-	public LinkedList<String[]> searchForEnglish(String english, boolean like) {
-		String select = "SELECT * FROM EnglishGerman WHERE english ";
-		select += like ? "LIKE '%' || ? || '%'" : "= ?";
+	public synchronized int getDeltaVersion() {
+		try {
+			return deltaVersion();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		}
+	}
 
-		LinkedList<String[]> res = null;
+	private int deltaVersion() throws SQLException {
+		ResultSet rs = database.getWriter().prepare(deltaVersionSql)
+				.executeQuery();
 		try {
-			PreparedStatement stmt = connection.prepareStatement(select);
-			stmt.setString(1, english);
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			rs.close();
+		}
+	}
 
-			ResultSet rs = stmt.executeQuery();
-			res = new LinkedList<String[]>();
-			while (rs.next()) {
-				res.addLast(new String[] { rs.getString("english"),
-						rs.getString("german"), rs.getString("type") });
+	/**
+	 * Inserts entries from a text file given by <tt>path</tt>. The text file
+	 * must be UTF-8 encoded and have the following scheme: 1) a line beginning
+	 * with '#' will be ignored 2) any other line must begin with an English
+	 * word, followed by a '\t' and the German meaning and then (optionally)
+	 * followed by another '\t' and the word type.
+	 * 
+	 * The file is streamed in batches, so it may be larger than the available
+	 * memory. Every <tt>DictionaryImporter.COMMIT_INTERVAL</tt> entries are
+	 * committed.
+	 * 
+	 * Entries the database already contains are skipped, so importing an
+	 * updated version of a file only inserts its new entries.
+	 * 
+	 * @param path
+	 *            the path to the text file
+	 * @return the number of inserted entries
+	 * @throws FileNotFoundException
+	 *             if the file given by <tt>path</tt> was not found
+	 */
+	public int insertEntriesFromFile(String path)
+			throws FileNotFoundException {
+		return insertEntriesFromFile(path, null);
+	}
+
+	/**
+	 * Inserts entries from a text file given by <tt>path</tt> like
+	 * <tt>insertEntriesFromFile(String)</tt> and tells <tt>listener</tt>
+	 * about the progress.
+	 * 
+	 * @param path
+	 *            the path to the text file
+	 * @param listener
+	 *            is told whenever a part of the file has been committed and
+	 *            when the import has finished, may be null
+	 * @return the number of inserted entries
+	 * @throws FileNotFoundException
+	 *             if the file given by <tt>path</tt> was not found
+	 */
+	public synchronized int insertEntriesFromFile(String path,
+			ImportListener listener) throws FileNotFoundException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		invalidate();
+		try {
+			return new DictionaryImporter(database.getWriter(), englishIndex,
+					germanIndex, englishLemma, germanLemma, listener).importFile(file
+					.getChannel());
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("IOException occured:\n"
+					+ e.getMessage());
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			invalidate();
+			try {
+				file.close();
+			} catch (IOException e) {
 			}
+		}
+	}
 
-			stmt.close();
+	/**
+	 * A SELECT statement of (english, german, type) rows.
+	 */
+	private interface Query {
+		PreparedStatement prepare(StatementCache statements)
+				throws SQLException;
+	}
+
+	/**
+	 * Runs a query on a reader of the pool or, if there is no pool, on the
+	 * single connection. The resulting arrays contain the given
+	 * <tt>columns</tt> of the selected rows in the given order, e.g. 2, 1, 3
+	 * turns (english, german, type) rows into {german, english, type}.
+	 */
+	private LinkedList<String[]> query(Query query, int... columns) {
+		if (readerCount == 0) {
+			synchronized (this) {
+				return query(database.getWriter(), query, columns);
+			}
+		}
+
+		readersLock.readLock().lock();
+		try {
+			Database d = acquire();
+			try {
+				ReaderPool pool = d.getReaders();
+				StatementCache reader = pool.acquire();
+				try {
+					return query(reader, query, columns);
+				} finally {
+					pool.release(reader);
+				}
+			} finally {
+				release(d);
+			}
+		} finally {
+			readersLock.readLock().unlock();
+		}
+	}
+
+	private static LinkedList<String[]> query(StatementCache statements,
+			Query query, int[] columns) {
+		LinkedList<String[]> res = new LinkedList<String[]>();
+		try {
+			ResultSet rs = query.prepare(statements).executeQuery();
+			while (rs.next()) {
+				String[] row = new String[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					row[i] = rs.getString(columns[i]);
+				}
+				res.addLast(row);
+			}
 			rs.close();
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("SQLException occured:\n"
 					+ e.getMessage());
 		}
+		return res;
+	}
 
-		Collections.sort(res, new Comparator<String[]>() {
+	private LinkedList<String[]> search(final NGramIndex index,
+			final String term, final boolean like, final int limit,
+			int first, int second) {
+		return query(new Query() {
 
 			@Override
-			public int compare(String[] arg0, String[] arg1) {
-				int len0 = arg0[0].length();
-				if (arg0[2].equals("verb") && arg0[0].startsWith("to "))
-					len0 -= 3;
-				int len1 = arg1[0].length();
-				if (arg1[2].equals("verb") && arg1[0].startsWith("to "))
-					len1 -= 3;
-
-				if (len0 != len1)
-					return len0 - len1;
-
-				return arg0[1].length() - arg1[1].length();
+			public PreparedStatement prepare(StatementCache statements)
+					throws SQLException {
+				return prepareSearch(statements, index, term, like, limit);
 			}
 
-		});
+		}, first, second, 3);
+	}
+
+	/**
+	 * Runs a search, using the cache and the in-memory dictionary if it is
+	 * loaded. If <tt>limit</tt> is greater than 0, only the best
+	 * <tt>limit</tt> entries are retrieved.
+	 */
+	private LinkedList<String[]> search(boolean english, String term,
+			boolean like, int limit) {
+		LinkedList<String[]> res = cache.get(english, term, like, limit);
+		if (res != null)
+			return res;
+
+		long generation = cache.generation();
+		MemoryDictionary m = memory;
+		if (m != null) {
+			res = english ? m.searchForEnglish(term, like) : m
+					.searchForGerman(term, like);
+			Collections.sort(res, english ? englishOrder : germanOrder);
+			while (limit > 0 && res.size() > limit)
+				res.removeLast();
+		} else {
+			res = english ? search(englishIndex, term, like, limit, 1, 2)
+					: search(germanIndex, term, like, limit, 2, 1);
+			// ranked searches are already sorted by the database
+			if (limit == 0)
+				Collections.sort(res, english ? englishOrder : germanOrder);
+		}
+		cache.put(english, term, like, limit, res, generation);
 
 		return res;
 	}
 
+	/**
+	 * Searches for an English word and returns a list of entries matching that
+	 * word.
+	 * 
+	 * @param english
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, the SQL query uses 'LIKE'
+	 * @return a list of String triples {english, german, type} where english
+	 *         matches the parameter <tt>english</tt>
+	 */
+	public LinkedList<String[]> searchForEnglish(String english, boolean like) {
+		return search(true, english, like, 0);
+	}
+
+	/**
+	 * Searches for an English word and returns the best <tt>limit</tt>
+	 * entries matching that word. The entries are ranked in the database, so
+	 * the cost of the search does not grow with the number of matching
+	 * entries.
+	 * 
+	 * @param english
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, the SQL query uses 'LIKE'
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return the best String triples {english, german, type} where english
+	 *         matches the parameter <tt>english</tt>
+	 */
+	public SearchResult searchForEnglish(String english, boolean like,
+			int limit) {
+		return ranked(true, english, like, limit);
+	}
+
 	/**
 	 * Searches for an German word and returns a list of entries matching that
 	 * word.
@@ -286,57 +1118,591 @@ public class SQLManager {
 	 *         matches the parameter <tt>german</tt>
 	 */
 	public LinkedList<String[]> searchForGerman(String german, boolean like) {
-		String select = "SELECT * FROM EnglishGerman WHERE german ";
-		select += like ? "LIKE '%' || ? || '%'" : "= ?";
+		return search(false, german, like, 0);
+	}
 
-		LinkedList<String[]> res = null;
-		try {
-			PreparedStatement stmt = connection.prepareStatement(select);
-			stmt.setString(1, german);
+	/**
+	 * Searches for a German word and returns the best <tt>limit</tt> entries
+	 * matching that word. The entries are ranked in the database, so the cost
+	 * of the search does not grow with the number of matching entries.
+	 * 
+	 * @param german
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, the SQL query uses 'LIKE'
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return the best String triples {german, english, type} where german
+	 *         matches the parameter <tt>german</tt>
+	 */
+	public SearchResult searchForGerman(String german, boolean like, int limit) {
+		return ranked(false, german, like, limit);
+	}
 
-			ResultSet rs = stmt.executeQuery();
-			res = new LinkedList<String[]>();
-			while (rs.next()) {
-				res.addLast(new String[] { rs.getString("german"),
-						rs.getString("english"), rs.getString("type") });
+	private SearchResult ranked(boolean english, String term, boolean like,
+			int limit) {
+		if (limit <= 0)
+			throw new IllegalArgumentException(
+					"The limit must be greater than 0!");
+
+		// one more entry tells if more are available
+		LinkedList<String[]> res = search(english, term, like, limit + 1);
+		boolean more = res.size() > limit;
+		if (more)
+			res.removeLast();
+		return new SearchResult(res, more);
+	}
+
+	/**
+	 * Searches for the entries of which the English word <tt>english</tt> is
+	 * an inflected form, e.g. the entries of "to go" for "went", and returns
+	 * the best <tt>limit</tt> of them. Case is ignored. These searches always
+	 * query the database, even if it is loaded into memory.
+	 * 
+	 * @param english
+	 *            the word form to be searched for
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return the best String triples {english, german, type} of the base
+	 *         forms of <tt>english</tt>
+	 */
+	public SearchResult searchForEnglishLemma(String english, int limit) {
+		return lemma(englishLemma, english, limit, 1, 2);
+	}
+
+	/**
+	 * Searches for the entries of which the German word <tt>german</tt> is an
+	 * inflected form like <tt>searchForEnglishLemma</tt> does for English
+	 * words.
+	 * 
+	 * @param german
+	 *            the word form to be searched for
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return the best String triples {german, english, type} of the base
+	 *         forms of <tt>german</tt>
+	 */
+	public SearchResult searchForGermanLemma(String german, int limit) {
+		return lemma(germanLemma, german, limit, 2, 1);
+	}
+
+	private SearchResult lemma(final LemmaIndex index, final String term,
+			final int limit, int first, int second) {
+		if (limit <= 0)
+			throw new IllegalArgumentException(
+					"The limit must be greater than 0!");
+
+		LinkedList<String[]> res = query(new Query() {
+
+			@Override
+			public PreparedStatement prepare(StatementCache statements)
+					throws SQLException {
+				PreparedStatement stmt = statements.prepare(index
+						.searchSql(true));
+				stmt.setString(1, LemmaIndex.fold(term));
+				// one more entry tells if more are available
+				stmt.setInt(2, limit + 1);
+				return stmt;
 			}
 
-			stmt.close();
-			rs.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-			throw new RuntimeException("SQLException occured:\n"
-					+ e.getMessage());
-		}
+		}, first, second, 3);
+		boolean more = res.size() > limit;
+		if (more)
+			res.removeLast();
+		return new SearchResult(res, more);
+	}
 
-		Collections.sort(res, new Comparator<String[]>() {
+	/**
+	 * Searches for the base forms of an English word like
+	 * <tt>searchForEnglishLemma</tt> without blocking the calling thread.
+	 * 
+	 * @param english
+	 *            the word form to be searched for
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return a future completed with the best String triples {english,
+	 *         german, type} or exceptionally if the search failed
+	 */
+	public CompletableFuture<SearchResult> searchForEnglishLemmaAsync(
+			final String english, final int limit) {
+		return CompletableFuture.supplyAsync(new Supplier<SearchResult>() {
 
 			@Override
-			public int compare(String[] arg0, String[] arg1) {
-				int diff = arg0[0].length() - arg1[0].length();
-				if (diff != 0)
-					return diff;
+			public SearchResult get() {
+				return searchForEnglishLemma(english, limit);
+			}
 
-				return arg0[1].length() - arg1[1].length();
+		}, lookups);
+	}
+
+	/**
+	 * Searches for English words within <tt>maxDistance</tt> edits of
+	 * <tt>english</tt>, ignoring case, and returns the best <tt>limit</tt>
+	 * entries of the closest words. This finds translations of words with
+	 * typos, which exact and infix searches miss. The first fuzzy search after
+	 * a change of the database builds an index of all English words.
+	 * 
+	 * @param english
+	 *            the word to be searched for
+	 * @param maxDistance
+	 *            the maximum number of inserted, deleted, replaced or swapped
+	 *            characters, between 0 and 2
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return the String triples {english, german, type} of the closest words
+	 */
+	public SearchResult searchForEnglishFuzzy(String english, int maxDistance,
+			int limit) {
+		return fuzzy(true, english, maxDistance, limit);
+	}
+
+	/**
+	 * Searches for German words within <tt>maxDistance</tt> edits of
+	 * <tt>german</tt> like <tt>searchForEnglishFuzzy</tt> does for English
+	 * words.
+	 * 
+	 * @param german
+	 *            the word to be searched for
+	 * @param maxDistance
+	 *            the maximum number of inserted, deleted, replaced or swapped
+	 *            characters, between 0 and 2
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return the String triples {german, english, type} of the closest words
+	 */
+	public SearchResult searchForGermanFuzzy(String german, int maxDistance,
+			int limit) {
+		return fuzzy(false, german, maxDistance, limit);
+	}
+
+	private SearchResult fuzzy(boolean english, String term, int maxDistance,
+			int limit) {
+		if (limit <= 0)
+			throw new IllegalArgumentException(
+					"The limit must be greater than 0!");
+
+		LinkedList<String[]> res = new LinkedList<String[]>();
+		for (String word : fuzzyIndex(english).search(term, maxDistance)) {
+			for (String[] entry : search(english, word, false, 0)) {
+				if (res.size() == limit)
+					return new SearchResult(res, true);
+				res.add(entry);
 			}
+		}
+		return new SearchResult(res, false);
+	}
 
-		});
+	/**
+	 * Retrieves the best <tt>k</tt> English words that start with
+	 * <tt>prefix</tt>, ignoring case. The words are ordered like the entries
+	 * of ranked searches, i.e. a word is as good as its best ranked entry, so
+	 * short words come first. The words are looked up in memory with a
+	 * binary search, so this is fast enough to be called on every keystroke.
+	 * The first call after a change of the database builds the index of all
+	 * English words, which takes a few seconds for large dictionaries.
+	 * 
+	 * @param prefix
+	 *            the beginning of the words
+	 * @param k
+	 *            the maximum number of words
+	 * @return the words starting with <tt>prefix</tt>, best first
+	 */
+	public LinkedList<String> completeEnglish(String prefix, int k) {
+		return fuzzyIndex(true).complete(prefix, k);
+	}
 
-		return res;
+	/**
+	 * Retrieves the best <tt>k</tt> German words that start with
+	 * <tt>prefix</tt> like <tt>completeEnglish</tt> does for English words.
+	 * 
+	 * @param prefix
+	 *            the beginning of the words
+	 * @param k
+	 *            the maximum number of words
+	 * @return the words starting with <tt>prefix</tt>, best first
+	 */
+	public LinkedList<String> completeGerman(String prefix, int k) {
+		return fuzzyIndex(false).complete(prefix, k);
+	}
+
+	/**
+	 * Completes an English word like <tt>completeEnglish</tt> without blocking
+	 * the calling thread, which may have to wait for the index to be built.
+	 * 
+	 * @param prefix
+	 *            the beginning of the words
+	 * @param k
+	 *            the maximum number of words
+	 * @return a future completed with the words starting with <tt>prefix</tt>
+	 *         or exceptionally if the index could not be built
+	 */
+	public CompletableFuture<LinkedList<String>> completeEnglishAsync(
+			final String prefix, final int k) {
+		return CompletableFuture.supplyAsync(
+				new Supplier<LinkedList<String>>() {
+
+					@Override
+					public LinkedList<String> get() {
+						return completeEnglish(prefix, k);
+					}
+
+				}, lookups);
 	}
 
 	/**
-	 * Closes the connection to the database.
+	 * Completes a German word like <tt>completeGerman</tt> without blocking
+	 * the calling thread, which may have to wait for the index to be built.
+	 * 
+	 * @param prefix
+	 *            the beginning of the words
+	 * @param k
+	 *            the maximum number of words
+	 * @return a future completed with the words starting with <tt>prefix</tt>
+	 *         or exceptionally if the index could not be built
 	 */
-	public void close() {
-		if (connection != null) {
+	public CompletableFuture<LinkedList<String>> completeGermanAsync(
+			final String prefix, final int k) {
+		return CompletableFuture.supplyAsync(
+				new Supplier<LinkedList<String>>() {
+
+					@Override
+					public LinkedList<String> get() {
+						return completeGerman(prefix, k);
+					}
+
+				}, lookups);
+	}
+
+	private FuzzyIndex fuzzyIndex(boolean english) {
+		FuzzyIndex index = english ? englishFuzzy : germanFuzzy;
+		if (index != null)
+			return index;
+
+		synchronized (this) {
+			index = english ? englishFuzzy : germanFuzzy;
+			if (index != null)
+				return index;
+
 			try {
-				connection.close();
+				index = FuzzyIndex.build(database.getWriter(),
+						english ? "english" : "german",
+						english ? "englishRank" : "germanRank");
 			} catch (SQLException e) {
 				e.printStackTrace();
 				throw new RuntimeException("SQLException occured:\n"
 						+ e.getMessage());
 			}
+			if (english)
+				englishFuzzy = index;
+			else
+				germanFuzzy = index;
+			return index;
+		}
+	}
+
+	/**
+	 * Looks up many English words and phrases at once, e.g. the terms of a
+	 * sentence split by <tt>Tokenizer</tt>. Every term finds the entries of
+	 * which it is an inflected form like in <tt>searchForEnglishLemma</tt>.
+	 * All terms are resolved by a single query (one per
+	 * <tt>LemmaIndex.MAX_BATCH</tt> distinct terms), so looking up a
+	 * paragraph costs about as much as looking up a single word.
+	 * 
+	 * @param english
+	 *            the words and phrases to be searched for
+	 * @param limit
+	 *            the maximum number of entries per term, must be greater than
+	 *            0
+	 * @return the best String triples {english, german, type} of every term
+	 *         in the order of <tt>english</tt>, terms without entries having
+	 *         an empty result
+	 */
+	public Map<String, SearchResult> searchForEnglishTerms(
+			Collection<String> english, int limit) {
+		return terms(englishLemma, english, limit, 1, 2);
+	}
+
+	/**
+	 * Looks up many German words and phrases at once like
+	 * <tt>searchForEnglishTerms</tt> does for English ones.
+	 * 
+	 * @param german
+	 *            the words and phrases to be searched for
+	 * @param limit
+	 *            the maximum number of entries per term, must be greater than
+	 *            0
+	 * @return the best String triples {german, english, type} of every term
+	 *         in the order of <tt>german</tt>, terms without entries having an
+	 *         empty result
+	 */
+	public Map<String, SearchResult> searchForGermanTerms(
+			Collection<String> german, int limit) {
+		return terms(germanLemma, german, limit, 2, 1);
+	}
+
+	private Map<String, SearchResult> terms(final LemmaIndex index,
+			Collection<String> terms, int limit, int first, int second) {
+		if (limit <= 0)
+			throw new IllegalArgumentException(
+					"The limit must be greater than 0!");
+
+		LinkedHashSet<String> forms = new LinkedHashSet<String>();
+		for (String term : terms) {
+			forms.add(LemmaIndex.fold(term));
+		}
+		forms.remove("");
+
+		// the best entries of every form, ordered by rank
+		Map<String, LinkedList<String[]>> found = new HashMap<String, LinkedList<String[]>>();
+		Set<String> more = new HashSet<String>();
+		List<String> all = new ArrayList<String>(forms);
+		for (int from = 0; from < all.size(); from += LemmaIndex.MAX_BATCH) {
+			final List<String> batch = all.subList(from,
+					Math.min(all.size(), from + LemmaIndex.MAX_BATCH));
+			LinkedList<String[]> rows = query(new Query() {
+
+				@Override
+				public PreparedStatement prepare(StatementCache statements)
+						throws SQLException {
+					PreparedStatement stmt = statements.prepare(index
+							.batchSql(batch.size()));
+					int size = LemmaIndex.batchSize(batch.size());
+					for (int i = 0; i < size; i++) {
+						if (i < batch.size())
+							stmt.setString(i + 1, batch.get(i));
+						else
+							stmt.setNull(i + 1, Types.VARCHAR);
+					}
+					return stmt;
+				}
+
+			}, 4, first, second, 3);
+
+			for (String[] row : rows) {
+				LinkedList<String[]> entries = found.get(row[0]);
+				if (entries == null) {
+					entries = new LinkedList<String[]>();
+					found.put(row[0], entries);
+				}
+				if (entries.size() == limit)
+					more.add(row[0]);
+				else
+					entries.add(new String[] { row[1], row[2], row[3] });
+			}
+		}
+
+		Map<String, SearchResult> res = new LinkedHashMap<String, SearchResult>();
+		for (String term : terms) {
+			String form = LemmaIndex.fold(term);
+			LinkedList<String[]> entries = found.get(form);
+			// every term gets its own list, which the caller may change
+			res.put(term, new SearchResult(
+					entries == null ? new LinkedList<String[]>()
+							: new LinkedList<String[]>(entries), more
+							.contains(form)));
+		}
+		return res;
+	}
+
+	/**
+	 * Looks up many English words and phrases like
+	 * <tt>searchForEnglishTerms</tt> without blocking the calling thread.
+	 * 
+	 * @param english
+	 *            the words and phrases to be searched for
+	 * @param limit
+	 *            the maximum number of entries per term, must be greater than
+	 *            0
+	 * @return a future completed with the best String triples {english,
+	 *         german, type} of every term or exceptionally if the search
+	 *         failed
+	 */
+	public CompletableFuture<Map<String, SearchResult>> searchForEnglishTermsAsync(
+			Collection<String> english, final int limit) {
+		final List<String> terms = new ArrayList<String>(english);
+		return CompletableFuture.supplyAsync(
+				new Supplier<Map<String, SearchResult>>() {
+
+					@Override
+					public Map<String, SearchResult> get() {
+						return searchForEnglishTerms(terms, limit);
+					}
+
+				}, lookups);
+	}
+
+	/**
+	 * Searches for English words with typos like
+	 * <tt>searchForEnglishFuzzy</tt> without blocking the calling thread.
+	 * 
+	 * @param english
+	 *            the word to be searched for
+	 * @param maxDistance
+	 *            the maximum number of inserted, deleted, replaced or swapped
+	 *            characters, between 0 and 2
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return a future completed with the String triples {english, german,
+	 *         type} of the closest words or exceptionally if the search failed
+	 */
+	public CompletableFuture<SearchResult> searchForEnglishFuzzyAsync(
+			final String english, final int maxDistance, final int limit) {
+		return CompletableFuture.supplyAsync(new Supplier<SearchResult>() {
+
+			@Override
+			public SearchResult get() {
+				return searchForEnglishFuzzy(english, maxDistance, limit);
+			}
+
+		}, lookups);
+	}
+
+	/**
+	 * Searches for an English word like <tt>searchForEnglish(english, like,
+	 * limit)</tt> without blocking the calling thread.
+	 * 
+	 * @param english
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, the SQL query uses 'LIKE'
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return a future completed with the best String triples {english,
+	 *         german, type} or exceptionally if the search failed
+	 */
+	public CompletableFuture<SearchResult> searchForEnglishAsync(
+			final String english, final boolean like, final int limit) {
+		return CompletableFuture.supplyAsync(new Supplier<SearchResult>() {
+
+			@Override
+			public SearchResult get() {
+				return searchForEnglish(english, like, limit);
+			}
+
+		}, lookups);
+	}
+
+	/**
+	 * Searches for a German word like <tt>searchForGerman(german, like,
+	 * limit)</tt> without blocking the calling thread.
+	 * 
+	 * @param german
+	 *            the word to be searched for
+	 * @param like
+	 *            if true, the SQL query uses 'LIKE'
+	 * @param limit
+	 *            the maximum number of entries, must be greater than 0
+	 * @return a future completed with the best String triples {german,
+	 *         english, type} or exceptionally if the search failed
+	 */
+	public CompletableFuture<SearchResult> searchForGermanAsync(
+			final String german, final boolean like, final int limit) {
+		return CompletableFuture.supplyAsync(new Supplier<SearchResult>() {
+
+			@Override
+			public SearchResult get() {
+				return searchForGerman(german, like, limit);
+			}
+
+		}, lookups);
+	}
+
+	/**
+	 * Loads the whole database into memory, so searches are answered without
+	 * accessing the database. Every change of the database discards the
+	 * in-memory copy, so this has to be called again after inserting entries
+	 * or switching the database.
+	 */
+	public synchronized void loadIntoMemory() {
+		try {
+			MemoryDictionary m = MemoryDictionary.build(database.getWriter());
+			cache.clear();
+			memory = m;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Loads the whole database into memory like <tt>loadIntoMemory()</tt>,
+	 * using the image file given by <tt>imagePath</tt>. The image is mapped
+	 * read-only instead of being read, so loading it takes almost no time. If
+	 * the image is missing or does not match the database, the in-memory copy
+	 * is built from the database and stored as a new image.
+	 * 
+	 * @param imagePath
+	 *            path to the image file
+	 */
+	public synchronized void loadIntoMemory(String imagePath) {
+		try {
+			StatementCache statements = database.getWriter();
+			long[] fingerprint = MemoryDictionary.fingerprint(statements);
+			MemoryDictionary m = null;
+			if (new File(imagePath).isFile()) {
+				try {
+					m = MemoryDictionary.load(imagePath);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+
+			if (m == null || !m.matches(fingerprint)) {
+				m = MemoryDictionary.build(statements);
+				try {
+					m.store(imagePath);
+				} catch (IOException e) {
+					// the built copy is used anyway
+					e.printStackTrace();
+				}
+			}
+			cache.clear();
+			memory = m;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Determines if searches are currently answered by an in-memory copy of
+	 * the database.
+	 * 
+	 * @return true if the database is loaded into memory
+	 */
+	public boolean isLoadedIntoMemory() {
+		return memory != null;
+	}
+
+	/**
+	 * Retrieves the cache of search results, e.g. to read its hit and miss
+	 * counters. The cache is cleared whenever the database changes.
+	 * 
+	 * @return the cache of search results
+	 */
+	public LookupCache getLookupCache() {
+		return cache;
+	}
+
+	/**
+	 * Closes the connection to the database. Asynchronous searches that have
+	 * not been started yet are discarded, running searches on a pool of
+	 * readers are finished before the connections are closed.
+	 */
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+
+		lookups.shutdownNow();
+		try {
+			database.release();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
 		}
 	}
 }
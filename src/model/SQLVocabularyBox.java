@@ -0,0 +1,1008 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A <tt>CardBox</tt> whose cards are kept in a sqlite database instead of the
+ * heap like the ones of a <tt>VocabularyBox</tt>. The database is a file of
+ * its own, opened like the dictionary by <tt>SQLManager</tt>, and consists of
+ *
+ * <ul>
+ * <li>the table BoxCard with a row for every card: its vocab, its
+ * translations, its schedule (see <tt>Scheduler</tt>), its case and its
+ * position in the case,</li>
+ * <li>the table BoxCase with the volume of every case, which is kept up to
+ * date by triggers on BoxCard.</li>
+ * </ul>
+ *
+ * Opening a box only reads the volumes, so it takes constant time regardless
+ * of the number of cards. A card is read when it becomes the first card of its
+ * case, by the index on case and position. Answering a card is a single
+ * update of its row: positions are real numbers, so a card is put back
+ * between two others by taking the mean of their positions. Only if two
+ * positions are too close for that, the first cards of the case are
+ * numbered anew.
+ *
+ * The cards due first are found by the index on the due time, which takes
+ * the place of the heap of a VocabularyBox.
+ *
+ * The first card of every case is kept, so the card returned by
+ * <tt>getNextVocabInCase</tt> can be edited in place like the cards of a
+ * VocabularyBox. Its changes are written when it is answered or, if it has
+ * been changed, when it is dropped, e.g. before its case is shuffled.
+ *
+ * Changes are committed right away, so there is no journal. The box holds a
+ * single connection, which is used by one thread at a time. Only the volumes
+ * are read without the lock of the box.
+ *
+ */
+public class SQLVocabularyBox extends CardBox implements Serializable {
+
+	private static final long serialVersionUID = 6911632416367066412L;
+
+	/**
+	 * The version of the schema created by this class. It is stored in the
+	 * user_version pragma of the database.
+	 */
+	static final int SCHEMA_VERSION = 2;
+
+	/** the columns of a card, read by <tt>card</tt> and set by <tt>bind</tt> */
+	private static final String cardColumns = "vocab, germans, due, interval, ease, repetitions";
+
+	private static final String volumesSql = "SELECT caseNo, volume FROM BoxCase ORDER BY caseNo";
+	private static final String headSql = "SELECT id, position, " + cardColumns + " FROM BoxCard WHERE caseNo = ? ORDER BY position LIMIT 1";
+	private static final String tailSql = "SELECT max(position) FROM BoxCard WHERE caseNo = ?";
+	private static final String positionsSql = "SELECT position FROM BoxCard WHERE caseNo = ? ORDER BY position LIMIT 2 OFFSET ?";
+	private static final String idsSql = "SELECT id FROM BoxCard WHERE caseNo = ? ORDER BY position LIMIT ? OFFSET ?";
+	private static final String findSql = "SELECT id, caseNo FROM BoxCard WHERE vocab = ?";
+	private static final String cardSql = "SELECT " + cardColumns + " FROM BoxCard WHERE id = ?";
+	private static final String allSql = "SELECT caseNo, " + cardColumns + " FROM BoxCard ORDER BY caseNo, position";
+	private static final String dueSql = "SELECT id, caseNo, " + cardColumns + " FROM BoxCard WHERE due <= ? ORDER BY due LIMIT ?";
+	private static final String insertSql = "INSERT INTO BoxCard (" + cardColumns + ", caseNo, position) VALUES(?,?,?,?,?,?,?,?)";
+	private static final String updateSql = "UPDATE BoxCard SET vocab = ?, germans = ?, due = ?, interval = ?, ease = ?, repetitions = ?, caseNo = ?, position = ? WHERE id = ?";
+	private static final String editSql = "UPDATE BoxCard SET vocab = ?, germans = ? WHERE id = ?";
+	private static final String positionSql = "UPDATE BoxCard SET position = ? WHERE id = ?";
+	private static final String deleteSql = "DELETE FROM BoxCard WHERE id = ?";
+
+	private static final Random random = new Random();
+
+	private final transient StatementCache statements;
+	/** held by all uses of the connection */
+	private final transient ReentrantLock lock = new ReentrantLock();
+	/** the volumes of the cases, replaced after every change */
+	private transient volatile int[] volumes;
+	/** the first card of every case, null if it has not been read yet */
+	private final transient Head[] heads;
+
+	/**
+	 * The first card of a case as it has been read.
+	 */
+	private static class Head {
+		private final long id;
+		private final double position;
+		private final String vocab;
+		private final byte[] germans;
+		private final VocabularyCard card;
+
+		Head(long id, double position, VocabularyCard card) {
+			this.id = id;
+			this.position = position;
+			this.vocab = card.getEnglish();
+			this.germans = encode(card.getGermans());
+			this.card = card;
+		}
+
+		boolean isChanged() {
+			return !equal(vocab, card.getEnglish())
+					|| !Arrays.equals(germans, encode(card.getGermans()));
+		}
+	}
+
+	/**
+	 * The row of a card.
+	 */
+	private static class Row {
+		private final long id;
+		private final int caseNo;
+
+		Row(long id, int caseNo) {
+			this.id = id;
+			this.caseNo = caseNo;
+		}
+	}
+
+	/**
+	 * A change consisting of several statements.
+	 */
+	private interface Transaction {
+		void run() throws SQLException;
+	}
+
+	/**
+	 * Opens the box stored in the database given by <tt>databasePath</tt>. If
+	 * the given file does not exist, it will be created with fife empty
+	 * cases.
+	 *
+	 * @param databasePath
+	 *            path to the database
+	 */
+	public SQLVocabularyBox(String databasePath) {
+		this(databasePath, 5);
+	}
+
+	/**
+	 * Opens the box stored in the database given by <tt>databasePath</tt>. If
+	 * the given file does not exist, it will be created with <tt>size</tt>
+	 * empty cases. Otherwise the box has as many cases as it has been created
+	 * with.
+	 *
+	 * @param databasePath
+	 *            path to the database
+	 * @param size
+	 *            The number of cases of a new box.
+	 */
+	public SQLVocabularyBox(String databasePath, int size) {
+		try {
+			statements = open(databasePath, size);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		}
+		try {
+			volumes = readVolumes();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			try {
+				statements.close();
+			} catch (SQLException e1) {
+				e1.printStackTrace();
+			}
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		}
+		heads = new Head[volumes.length];
+	}
+
+	/**
+	 * Opens the database given by <tt>databasePath</tt> and creates or
+	 * upgrades its schema.
+	 */
+	private static StatementCache open(String databasePath, int size)
+			throws SQLException {
+		StatementCache statements = new StatementCache(
+				SQLManager.connect(databasePath));
+		try {
+			Connection c = statements.getConnection();
+			SQLManager.enableWal(c);
+			upgrade(c, DictionaryImporter.pragma(c, "user_version"), size);
+		} catch (SQLException e) {
+			statements.close();
+			throw e;
+		}
+		return statements;
+	}
+
+	/**
+	 * Upgrades the schema of the database from <tt>version</tt> to
+	 * <tt>SCHEMA_VERSION</tt>. Every step is committed together with the new
+	 * version.
+	 */
+	private static void upgrade(Connection c, int version, int size)
+			throws SQLException {
+		if (version > SCHEMA_VERSION)
+			throw new SQLException("The box has schema version " + version
+					+ ", but only versions up to " + SCHEMA_VERSION
+					+ " are supported");
+
+		c.setAutoCommit(false);
+		try {
+			while (version < SCHEMA_VERSION) {
+				migrate(c, version, size);
+				version++;
+				DictionaryImporter.setPragma(c, "user_version", version);
+				c.commit();
+			}
+		} catch (SQLException e) {
+			c.rollback();
+			throw e;
+		} finally {
+			c.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Migrates the schema from <tt>version</tt> to <tt>version + 1</tt>.
+	 */
+	private static void migrate(Connection c, int version, int size)
+			throws SQLException {
+		Statement stmt = c.createStatement();
+		try {
+			switch (version) {
+			case 0:
+				stmt.executeUpdate("CREATE TABLE BoxCase "
+						+ "(caseNo INTEGER PRIMARY KEY NOT NULL,"
+						+ "volume INTEGER NOT NULL)");
+				stmt.executeUpdate("CREATE TABLE BoxCard "
+						+ "(id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
+						+ "vocab VARCHAR(250)," + "germans BLOB,"
+						+ "caseNo INTEGER NOT NULL," + "position REAL NOT NULL)");
+				stmt.executeUpdate("CREATE INDEX BoxCardVocabIndex ON BoxCard (vocab)");
+				stmt.executeUpdate("CREATE INDEX BoxCardPositionIndex ON BoxCard (caseNo, position)");
+				stmt.executeUpdate("CREATE TRIGGER BoxCardInserted AFTER INSERT ON BoxCard BEGIN "
+						+ "UPDATE BoxCase SET volume = volume + 1 WHERE caseNo = new.caseNo; END");
+				stmt.executeUpdate("CREATE TRIGGER BoxCardDeleted AFTER DELETE ON BoxCard BEGIN "
+						+ "UPDATE BoxCase SET volume = volume - 1 WHERE caseNo = old.caseNo; END");
+				stmt.executeUpdate("CREATE TRIGGER BoxCardMoved AFTER UPDATE OF caseNo ON BoxCard "
+						+ "WHEN old.caseNo <> new.caseNo BEGIN "
+						+ "UPDATE BoxCase SET volume = volume - 1 WHERE caseNo = old.caseNo; "
+						+ "UPDATE BoxCase SET volume = volume + 1 WHERE caseNo = new.caseNo; END");
+				for (int i = 0; i < size; i++) {
+					stmt.executeUpdate("INSERT INTO BoxCase (caseNo, volume) VALUES("
+							+ i + ", 0)");
+				}
+				break;
+			case 1:
+				stmt.executeUpdate("ALTER TABLE BoxCard ADD COLUMN due INTEGER NOT NULL DEFAULT 0");
+				stmt.executeUpdate("ALTER TABLE BoxCard ADD COLUMN interval INTEGER NOT NULL DEFAULT 0");
+				stmt.executeUpdate("ALTER TABLE BoxCard ADD COLUMN ease INTEGER NOT NULL DEFAULT "
+						+ Scheduler.INITIAL_EASE);
+				stmt.executeUpdate("ALTER TABLE BoxCard ADD COLUMN repetitions INTEGER NOT NULL DEFAULT 0");
+				stmt.executeUpdate("CREATE INDEX BoxCardDueIndex ON BoxCard (due)");
+				break;
+			default:
+				throw new IllegalStateException("unknown schema version "
+						+ version);
+			}
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private int[] readVolumes() throws SQLException {
+		List<Integer> res = new ArrayList<Integer>();
+		ResultSet rs = statements.prepare(volumesSql).executeQuery();
+		try {
+			while (rs.next()) {
+				if (rs.getInt(1) != res.size())
+					throw new SQLException("The cases of the box are not numbered 0, 1, ...");
+				res.add(rs.getInt(2));
+			}
+		} finally {
+			rs.close();
+		}
+		if (res.isEmpty())
+			throw new SQLException("A VocabularyBox needs cases");
+
+		int[] volumes = new int[res.size()];
+		for (int i = 0; i < volumes.length; i++) {
+			volumes[i] = res.get(i);
+		}
+		return volumes;
+	}
+
+	/**
+	 * Publishes the volumes of the cases after a card has been added to or
+	 * removed from a case. The caller holds the lock of the box.
+	 */
+	private void publish(int caseNo, int change) {
+		int[] res = volumes.clone();
+		res[caseNo] += change;
+		volumes = res;
+	}
+
+	/**
+	 * Runs several statements in one transaction. If it fails, the volumes are
+	 * read again and the first cards are dropped without writing them.
+	 */
+	private void inTransaction(Transaction transaction) throws SQLException {
+		Connection connection = statements.getConnection();
+		connection.setAutoCommit(false);
+		boolean success = false;
+		try {
+			transaction.run();
+			connection.commit();
+			success = true;
+		} finally {
+			if (!success) {
+				connection.rollback();
+				Arrays.fill(heads, null);
+			}
+			connection.setAutoCommit(true);
+			if (!success)
+				volumes = readVolumes();
+		}
+	}
+
+	/**
+	 * Retrieves the first card of a case, reading it if necessary.
+	 *
+	 * @return the first card or null if the case is empty
+	 */
+	private Head head(int caseNo) throws SQLException {
+		if (heads[caseNo] != null || volumes[caseNo] == 0)
+			return heads[caseNo];
+
+		PreparedStatement stmt = statements.prepare(headSql);
+		stmt.setInt(1, caseNo);
+		ResultSet rs = stmt.executeQuery();
+		try {
+			if (rs.next())
+				heads[caseNo] = new Head(rs.getLong(1), rs.getDouble(2),
+						card(rs, 3));
+		} finally {
+			rs.close();
+		}
+		return heads[caseNo];
+	}
+
+	/**
+	 * Forgets the first card of a case, writing it if it has been changed.
+	 */
+	private void dropHead(int caseNo) throws SQLException {
+		Head head = heads[caseNo];
+		if (head == null)
+			return;
+
+		if (head.isChanged()) {
+			PreparedStatement stmt = statements.prepare(editSql);
+			stmt.setString(1, head.card.getEnglish());
+			stmt.setBytes(2, encode(head.card.getGermans()));
+			stmt.setLong(3, head.id);
+			stmt.executeUpdate();
+		}
+		heads[caseNo] = null;
+	}
+
+	/**
+	 * Finds the row of a vocabulary. The first cards are searched by their
+	 * current vocab, since they may have been renamed.
+	 */
+	private Row row(String vocab) throws SQLException {
+		for (int i = 0; i < heads.length; i++) {
+			if (heads[i] != null && vocab.equals(heads[i].card.getEnglish()))
+				return new Row(heads[i].id, i);
+		}
+
+		PreparedStatement stmt = statements.prepare(findSql);
+		stmt.setString(1, vocab);
+		ResultSet rs = stmt.executeQuery();
+		try {
+			while (rs.next()) {
+				Row row = new Row(rs.getLong(1), rs.getInt(2));
+				if (!isHead(row))
+					return row;
+			}
+			return null;
+		} finally {
+			rs.close();
+		}
+	}
+
+	private boolean isHead(Row row) {
+		return heads[row.caseNo] != null && heads[row.caseNo].id == row.id;
+	}
+
+	/**
+	 * Retrieves the card of a row.
+	 */
+	private VocabularyCard card(Row row) throws SQLException {
+		if (isHead(row))
+			return heads[row.caseNo].card;
+
+		PreparedStatement stmt = statements.prepare(cardSql);
+		stmt.setLong(1, row.id);
+		ResultSet rs = stmt.executeQuery();
+		try {
+			if (!rs.next())
+				throw new SQLException("card " + row.id + " not found");
+			return card(rs, 1);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Retrieves the position behind the last card of a case.
+	 */
+	private double end(int caseNo) throws SQLException {
+		PreparedStatement stmt = statements.prepare(tailSql);
+		stmt.setInt(1, caseNo);
+		ResultSet rs = stmt.executeQuery();
+		try {
+			rs.next();
+			return rs.getDouble(1) + 1;
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Retrieves the ids of <tt>count</tt> cards of a case, beginning with the
+	 * card at <tt>offset</tt>, or of all remaining cards if <tt>count</tt> is
+	 * negative.
+	 */
+	private List<Long> ids(int caseNo, int count, int offset)
+			throws SQLException {
+		PreparedStatement stmt = statements.prepare(idsSql);
+		stmt.setInt(1, caseNo);
+		stmt.setInt(2, count);
+		stmt.setInt(3, offset);
+		List<Long> res = new ArrayList<Long>();
+		ResultSet rs = stmt.executeQuery();
+		try {
+			while (rs.next()) {
+				res.add(rs.getLong(1));
+			}
+		} finally {
+			rs.close();
+		}
+		return res;
+	}
+
+	/**
+	 * Appends a card that is not contained in the box yet to a case.
+	 */
+	private void add(int caseNo, VocabularyCard card) throws SQLException {
+		PreparedStatement stmt = statements.prepare(insertSql);
+		bind(stmt, 1, card);
+		stmt.setInt(7, caseNo);
+		stmt.setDouble(8, end(caseNo));
+		stmt.executeUpdate();
+		publish(caseNo, 1);
+	}
+
+	/**
+	 * Writes <tt>card</tt> into a row and moves it to <tt>position</tt> in
+	 * case <tt>to</tt>.
+	 */
+	private void move(Row row, VocabularyCard card, int to, double position)
+			throws SQLException {
+		PreparedStatement stmt = statements.prepare(updateSql);
+		bind(stmt, 1, card);
+		stmt.setInt(7, to);
+		stmt.setDouble(8, position);
+		stmt.setLong(9, row.id);
+		stmt.executeUpdate();
+
+		if (isHead(row))
+			heads[row.caseNo] = null;
+		publish(row.caseNo, -1);
+		publish(to, 1);
+	}
+
+	/**
+	 * Moves the first card of a case to the end of another one.
+	 */
+	private void moveFirst(int from, int to) throws SQLException {
+		Head head = head(from);
+		if (head == null)
+			throw new NoSuchElementException();
+		move(new Row(head.id, from), head.card, to, end(to));
+	}
+
+	@Override
+	public int getNumberOfCases() {
+		return volumes.length;
+	}
+
+	@Override
+	public int find(VocabularyCard card) {
+		lock.lock();
+		try {
+			Row row = row(card.getEnglish());
+			return row == null ? -1 : row.caseNo;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public VocabularyCard remove(VocabularyCard card) {
+		lock.lock();
+		try {
+			Row row = row(card.getEnglish());
+			if (row == null)
+				return null;
+
+			VocabularyCard res = card(row);
+			PreparedStatement stmt = statements.prepare(deleteSql);
+			stmt.setLong(1, row.id);
+			stmt.executeUpdate();
+			if (isHead(row))
+				heads[row.caseNo] = null;
+			publish(row.caseNo, -1);
+			return res;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean insert(String vocab) {
+		lock.lock();
+		try {
+			if (row(vocab) != null)
+				return false;
+
+			add(0, new VocabularyCard(vocab));
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean insert(VocabularyCard card) {
+		lock.lock();
+		try {
+			Row row = row(card.getEnglish());
+			if (row == null)
+				add(0, card);
+			else
+				move(row, card(row).merge(card), 0, end(0));
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public VocabularyCard getNextVocabInCase(int caseNo) {
+		checkCaseNo(caseNo);
+
+		lock.lock();
+		try {
+			Head head = head(caseNo);
+			return head == null ? null : head.card;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void answerVocabInCase(int caseNo, boolean correct) {
+		checkCaseNo(caseNo);
+
+		lock.lock();
+		try {
+			if (correct)
+				moveFirst(caseNo, Math.min(getNumberOfCases() - 1, caseNo + 1));
+			else
+				moveFirst(caseNo, 0);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void answerVocabInCaseZeroWithLimit(final int limit, boolean correct) {
+		if (limit < 0)
+			throw new IllegalArgumentException("limit must be non-negative");
+
+		lock.lock();
+		try {
+			if (correct) {
+				moveFirst(0, Math.min(1, getNumberOfCases() - 1));
+				return;
+			}
+
+			final Head head = head(0);
+			if (head == null)
+				throw new NoSuchElementException();
+			final Row row = new Row(head.id, 0);
+			// the number of cards the card is put behind
+			final int count = Math.min(limit, volumes[0] - 1);
+			if (count == 0) {
+				move(row, head.card, 0, head.position);
+				return;
+			}
+
+			PreparedStatement stmt = statements.prepare(positionsSql);
+			stmt.setInt(1, 0);
+			stmt.setInt(2, count);
+			double before;
+			double after = Double.NaN;
+			ResultSet rs = stmt.executeQuery();
+			try {
+				rs.next();
+				before = rs.getDouble(1);
+				if (rs.next())
+					after = rs.getDouble(1);
+			} finally {
+				rs.close();
+			}
+			if (Double.isNaN(after))
+				after = before + 1;
+
+			double position = (before + after) / 2;
+			if (before < position && position < after) {
+				move(row, head.card, 0, position);
+				return;
+			}
+
+			// no room between the positions, so the cards in front of the
+			// card are moved in front of 'after'
+			final double end = after;
+			inTransaction(new Transaction() {
+				@Override
+				public void run() throws SQLException {
+					List<Long> ids = ids(0, count, 1);
+					PreparedStatement update = statements.prepare(positionSql);
+					for (int i = 0; i < ids.size(); i++) {
+						update.setDouble(1, end - ids.size() + i);
+						update.setLong(2, ids.get(i));
+						update.addBatch();
+					}
+					update.executeBatch();
+					move(row, head.card, 0, end - 0.5);
+				}
+			});
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public VocabularyCard getNextDueVocab() {
+		List<VocabularyCard> res = getDueVocabs(Long.MAX_VALUE, 1);
+		return res.isEmpty() ? null : res.get(0);
+	}
+
+	@Override
+	public List<VocabularyCard> getDueVocabs(long until, int limit) {
+		lock.lock();
+		try {
+			PreparedStatement stmt = statements.prepare(dueSql);
+			stmt.setLong(1, until);
+			stmt.setInt(2, limit);
+			List<VocabularyCard> res = new ArrayList<VocabularyCard>();
+			ResultSet rs = stmt.executeQuery();
+			try {
+				while (rs.next()) {
+					Row row = new Row(rs.getLong(1), rs.getInt(2));
+					res.add(isHead(row) ? heads[row.caseNo].card : card(rs, 3));
+				}
+			} finally {
+				rs.close();
+			}
+			return res;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void reviewVocab(VocabularyCard card, int quality) {
+		Scheduler.checkQuality(quality);
+
+		lock.lock();
+		try {
+			Row row = row(card.getEnglish());
+			if (row == null)
+				throw new NoSuchElementException("'" + card.getEnglish()
+						+ "' is not in the VocabularyBox");
+
+			VocabularyCard reviewed = card(row);
+			Scheduler.review(reviewed, quality, System.currentTimeMillis());
+			int to = quality >= Scheduler.PASSING_QUALITY ? Math.min(
+					getNumberOfCases() - 1, row.caseNo + 1) : 0;
+			move(row, reviewed, to, end(to));
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void shuffleCase(int caseNo) {
+		shuffleCase(caseNo, random.nextLong());
+	}
+
+	/**
+	 * Shuffles a case with a random generator seeded with <tt>seed</tt>, in
+	 * the same order as a VocabularyBox does.
+	 */
+	void shuffleCase(final int caseNo, final long seed) {
+		checkCaseNo(caseNo);
+
+		lock.lock();
+		try {
+			dropHead(caseNo);
+			inTransaction(new Transaction() {
+				@Override
+				public void run() throws SQLException {
+					List<Long> ids = ids(caseNo, -1, 0);
+					Collections.shuffle(ids, new Random(seed));
+					PreparedStatement stmt = statements.prepare(positionSql);
+					for (int i = 0; i < ids.size(); i++) {
+						stmt.setDouble(1, i);
+						stmt.setLong(2, ids.get(i));
+						stmt.addBatch();
+						if ((i + 1) % DictionaryImporter.BATCH_SIZE == 0)
+							stmt.executeBatch();
+					}
+					stmt.executeBatch();
+				}
+			});
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int[] getCaseVolumes() {
+		return volumes.clone();
+	}
+
+	/**
+	 * Reads all cards, so this takes time linear in the size of the box.
+	 */
+	@Override
+	List<List<VocabularyCard>> getCases() {
+		lock.lock();
+		try {
+			List<List<VocabularyCard>> res = new ArrayList<List<VocabularyCard>>();
+			for (int i = 0; i < heads.length; i++) {
+				dropHead(i);
+				res.add(new ArrayList<VocabularyCard>(volumes[i]));
+			}
+
+			ResultSet rs = statements.prepare(allSql).executeQuery();
+			try {
+				while (rs.next()) {
+					res.get(rs.getInt(1)).add(card(rs, 2));
+				}
+			} finally {
+				rs.close();
+			}
+			return res;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stores the cards in a file like a VocabularyBox with the same cards,
+	 * which reads all cards.
+	 */
+	@Override
+	public void storeInFile(String path) throws FileNotFoundException {
+		try {
+			VocabularyBox.store(path, getCases());
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("IOException occured:\n"
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Inserts the cards of a box stored in the file <tt>path</tt> into their
+	 * cases, all in one transaction. A card this box already contains is put
+	 * into the lower one of both cases and their translations are merged, like
+	 * <tt>merge</tt> does. Cards of cases this box does not have are put into
+	 * its last case.
+	 *
+	 * @param path
+	 *            Path to the file to load the cards from.
+	 * @return the number of cards this box did not contain yet
+	 * @throws FileNotFoundException
+	 *             if the file given by <tt>path</tt> was not found
+	 */
+	public int insertCardsFromFile(String path) throws FileNotFoundException {
+		final List<List<VocabularyCard>> cases;
+		try {
+			cases = VocabularyBox.loadFromFile(path).getCases();
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("IOException occured:\n"
+					+ e.getMessage());
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+			throw new RuntimeException("ClassNotFoundException occured:\n"
+					+ e.getMessage());
+		}
+
+		lock.lock();
+		try {
+			final int[] inserted = new int[1];
+			inTransaction(new Transaction() {
+				@Override
+				public void run() throws SQLException {
+					for (int i = 0; i < cases.size(); i++) {
+						int caseNo = Math.min(i, getNumberOfCases() - 1);
+						for (VocabularyCard card : cases.get(i)) {
+							Row row = row(card.getEnglish());
+							if (row == null) {
+								add(caseNo, card);
+								inserted[0]++;
+							} else {
+								int to = Math.min(row.caseNo, caseNo);
+								move(row, card(row).merge(card), to, end(to));
+							}
+						}
+					}
+				}
+			});
+			return inserted[0];
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the changes of the first cards and closes the connection to the
+	 * database.
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			for (int i = 0; i < heads.length; i++) {
+				dropHead(i);
+			}
+			statements.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("SQLException occured:\n"
+					+ e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A box is serialized like a VocabularyBox with the same cards.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return VocabularyBox.fromCases(getCases());
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Encodes translations as their number, then for every translation the
+	 * number of its fields and every field.
+	 */
+	private static byte[] encode(List<List<String>> germans) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(germans.size());
+			for (List<String> german : germans) {
+				out.writeInt(german.size());
+				for (String s : german) {
+					out.writeBoolean(s != null);
+					if (s != null)
+						out.writeUTF(s);
+				}
+			}
+		} catch (IOException e) {
+			// a ByteArrayOutputStream does not throw
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a card from the columns <tt>cardColumns</tt> of a row, beginning
+	 * with <tt>column</tt>.
+	 */
+	private static VocabularyCard card(ResultSet rs, int column)
+			throws SQLException {
+		VocabularyCard card = decode(rs.getString(column),
+				rs.getBytes(column + 1));
+		card.schedule(rs.getLong(column + 2), rs.getInt(column + 3),
+				rs.getInt(column + 4), rs.getInt(column + 5));
+		return card;
+	}
+
+	/**
+	 * Sets the parameters for the columns <tt>cardColumns</tt> to a card,
+	 * beginning with <tt>param</tt>.
+	 */
+	private static void bind(PreparedStatement stmt, int param,
+			VocabularyCard card) throws SQLException {
+		stmt.setString(param, card.getEnglish());
+		stmt.setBytes(param + 1, encode(card.getGermans()));
+		stmt.setLong(param + 2, card.getDue());
+		stmt.setInt(param + 3, card.getInterval());
+		stmt.setInt(param + 4, card.getEase());
+		stmt.setInt(param + 5, card.getRepetitions());
+	}
+
+	private static VocabularyCard decode(String vocab, byte[] germans)
+			throws SQLException {
+		VocabularyCard card = new VocabularyCard(vocab);
+		if (germans == null)
+			return card;
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				germans));
+		try {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String[] german = new String[in.readInt()];
+				for (int j = 0; j < german.length; j++) {
+					german[j] = in.readBoolean() ? in.readUTF() : null;
+				}
+				card.addGerman(german);
+			}
+		} catch (IOException e) {
+			throw new SQLException("invalid translations of " + vocab);
+		}
+		return card;
+	}
+}
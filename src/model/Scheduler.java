@@ -0,0 +1,108 @@
+package model;
+
+import java.util.Calendar;
+
+/**
+ * Schedules the reviews of cards by the SM-2 algorithm. After every review
+ * the card is rated with a quality from 0 (not known at all) to 5 (known
+ * perfectly); 3 or more means the card was known. A known card is due again
+ * after 1 day, then after 6 days and then after its last interval times its
+ * ease factor. A card that was not known starts over with 1 day. The ease
+ * factor starts at 2.5, grows by 0.1 with every perfect review, shrinks with
+ * every worse one and never falls below 1.3.
+ *
+ * Intervals are whole days and ease factors are stored in thousandths, so
+ * the schedule of a card consists of primitive fields only.
+ *
+ */
+class Scheduler {
+
+	/**
+	 * The ease factor of a new card in thousandths.
+	 */
+	static final int INITIAL_EASE = 2500;
+
+	/**
+	 * The minimum ease factor in thousandths.
+	 */
+	static final int MIN_EASE = 1300;
+
+	/**
+	 * The lowest quality a known card is rated with.
+	 */
+	static final int PASSING_QUALITY = 3;
+
+	/**
+	 * The highest quality.
+	 */
+	static final int MAX_QUALITY = 5;
+
+	/**
+	 * The maximum interval in days, so due times do not overflow.
+	 */
+	static final int MAX_INTERVAL = 100 * 365;
+
+	static final long DAY = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Schedules the next review of <tt>card</tt> after it has been reviewed
+	 * at the time <tt>now</tt>.
+	 *
+	 * @param card
+	 *            the reviewed card
+	 * @param quality
+	 *            the quality of the answer, from 0 to <tt>MAX_QUALITY</tt>
+	 * @param now
+	 *            the time of the review in ms since the epoch
+	 * @throws IllegalArgumentException
+	 *             if <tt>quality</tt> is not in [0,MAX_QUALITY].
+	 */
+	static void review(VocabularyCard card, int quality, long now) {
+		checkQuality(quality);
+
+		int interval;
+		int repetitions;
+		if (quality >= PASSING_QUALITY) {
+			if (card.getRepetitions() == 0)
+				interval = 1;
+			else if (card.getRepetitions() == 1)
+				interval = 6;
+			else
+				interval = (int) Math.min(MAX_INTERVAL,
+						Math.round((double) card.getInterval()
+								* card.getEase() / 1000));
+			repetitions = card.getRepetitions() + 1;
+		} else {
+			interval = 1;
+			repetitions = 0;
+		}
+
+		// EF' = EF + 0.1 - (5 - q) * (0.08 + (5 - q) * 0.02)
+		int miss = MAX_QUALITY - quality;
+		int ease = Math.max(MIN_EASE, card.getEase() + 100 - miss
+				* (80 + miss * 20));
+
+		card.schedule(now + interval * DAY, interval, ease, repetitions);
+	}
+
+	static void checkQuality(int quality) {
+		if (quality < 0 || quality > MAX_QUALITY)
+			throw new IllegalArgumentException(
+					"The quality must be between 0 and " + MAX_QUALITY);
+	}
+
+	/**
+	 * Retrieves the beginning of the day after <tt>now</tt> in the default
+	 * time zone, so all cards due today are due before it.
+	 */
+	static long endOfDay(long now) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(now);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.DAY_OF_MONTH, 1);
+		return calendar.getTimeInMillis();
+	}
+}
@@ -0,0 +1,54 @@
+package model;
+
+import java.util.LinkedList;
+
+/**
+ * The result of a ranked search of a <tt>SQLManager</tt>. It contains the best
+ * entries up to the limit of the search and tells whether there are more
+ * matching entries.
+ *
+ */
+public class SearchResult {
+
+	/**
+	 * The factor of the primary criterion in the rank of an entry. The
+	 * secondary criterion is limited to the values below.
+	 */
+	static final int RANK_FACTOR = 1024;
+
+	private final LinkedList<String[]> entries;
+	private final boolean more;
+
+	/**
+	 * Creates a new SearchResult.
+	 *
+	 * @param entries
+	 *            the best entries in order of their rank
+	 * @param more
+	 *            true if there are more matching entries than
+	 *            <tt>entries</tt>
+	 */
+	public SearchResult(LinkedList<String[]> entries, boolean more) {
+		this.entries = entries;
+		this.more = more;
+	}
+
+	/**
+	 * Retrieves the best entries in order of their rank.
+	 *
+	 * @return a list of String triples
+	 */
+	public LinkedList<String[]> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Determines if there are more matching entries than those returned by
+	 * <tt>getEntries</tt>.
+	 *
+	 * @return true if more entries are available
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+}
@@ -0,0 +1,98 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection to a database that keeps every statement it has prepared, so
+ * the same SQL is compiled only once per connection. The cached statements
+ * must not be closed by the caller but only be reset by <tt>clear</tt> or
+ * <tt>close</tt>.
+ *
+ * A StatementCache is not thread safe. Its statements must not be used by more
+ * than one thread at a time.
+ *
+ */
+class StatementCache {
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+	/**
+	 * Creates a new StatementCache for <tt>connection</tt>.
+	 *
+	 * @param connection
+	 *            the connection the statements are prepared in
+	 */
+	StatementCache(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Retrieves the underlying connection.
+	 *
+	 * @return the connection
+	 */
+	Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Retrieves the prepared statement for <tt>sql</tt>, preparing it if it
+	 * has not been prepared before. The parameters of a statement returned
+	 * earlier are cleared.
+	 *
+	 * @param sql
+	 *            the SQL of the statement
+	 * @return the prepared statement
+	 * @throws SQLException
+	 */
+	PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt == null) {
+			stmt = connection.prepareStatement(sql);
+			statements.put(sql, stmt);
+		} else {
+			stmt.clearParameters();
+		}
+		return stmt;
+	}
+
+	/**
+	 * Closes all cached statements, e.g. because the schema they were
+	 * compiled against has changed.
+	 *
+	 * @throws SQLException
+	 */
+	void clear() throws SQLException {
+		SQLException first = null;
+		for (PreparedStatement stmt : statements.values()) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				if (first == null)
+					first = e;
+			}
+		}
+		statements.clear();
+
+		if (first != null)
+			throw first;
+	}
+
+	/**
+	 * Closes all cached statements and the connection.
+	 *
+	 * @throws SQLException
+	 */
+	void close() throws SQLException {
+		try {
+			clear();
+		} finally {
+			connection.close();
+		}
+	}
+}
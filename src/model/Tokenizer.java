@@ -0,0 +1,129 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Splits text into the words and phrases that may be looked up in the
+ * dictionary. A word is a run of letters and digits that may contain
+ * apostrophes and hyphens, e.g. "don't" or "well-known". Phrases are runs of
+ * consecutive words that are not separated by punctuation, so "by the way"
+ * is a phrase of "He left, by the way." but "left by" is not.
+ *
+ */
+public class Tokenizer {
+
+	/**
+	 * The minimum length of a single word to be looked up. Shorter words are
+	 * mostly articles and abbreviations.
+	 */
+	public static final int MIN_WORD_LENGTH = 2;
+
+	private Tokenizer() {
+	}
+
+	/**
+	 * Retrieves all words of <tt>text</tt> in order.
+	 *
+	 * @param text
+	 *            the text to be split
+	 * @return the words of the text
+	 */
+	public static LinkedList<String> words(String text) {
+		LinkedList<String> res = new LinkedList<String>();
+		for (List<String> clause : clauses(text)) {
+			res.addAll(clause);
+		}
+		return res;
+	}
+
+	/**
+	 * Retrieves the distinct terms of <tt>text</tt> to be looked up, i.e. its
+	 * words and its phrases of up to <tt>maxWords</tt> words. The terms are
+	 * ordered by their position in the text, longer phrases first. Single
+	 * words shorter than <tt>MIN_WORD_LENGTH</tt> and numbers are left out.
+	 *
+	 * @param text
+	 *            the text to be split
+	 * @param maxWords
+	 *            the maximum number of words of a phrase, 1 for single words
+	 *            only
+	 * @return the terms in order of their first occurrence
+	 */
+	public static LinkedHashSet<String> terms(String text, int maxWords) {
+		LinkedHashSet<String> res = new LinkedHashSet<String>();
+		for (List<String> clause : clauses(text)) {
+			for (int i = 0; i < clause.size(); i++) {
+				for (int n = Math.min(maxWords, clause.size() - i); n > 1; n--) {
+					StringBuilder sb = new StringBuilder(clause.get(i));
+					for (int j = i + 1; j < i + n; j++) {
+						sb.append(' ').append(clause.get(j));
+					}
+					res.add(sb.toString());
+				}
+
+				String word = clause.get(i);
+				if (word.length() >= MIN_WORD_LENGTH && !isNumber(word))
+					res.add(word);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Splits <tt>text</tt> at punctuation into lists of words.
+	 */
+	private static List<List<String>> clauses(String text) {
+		List<List<String>> res = new ArrayList<List<String>>();
+		List<String> clause = new ArrayList<String>();
+		int i = 0;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				int end = wordEnd(text, i);
+				clause.add(text.substring(i, end));
+				i = end;
+				continue;
+			}
+
+			if (!Character.isWhitespace(c) && !clause.isEmpty()) {
+				res.add(clause);
+				clause = new ArrayList<String>();
+			}
+			i++;
+		}
+		if (!clause.isEmpty())
+			res.add(clause);
+		return res;
+	}
+
+	/**
+	 * Finds the end of the word starting at <tt>start</tt>. Apostrophes and
+	 * hyphens belong to the word if a letter or digit follows them.
+	 */
+	private static int wordEnd(String text, int start) {
+		int i = start + 1;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c))
+				i++;
+			else if ((c == '\'' || c == '\u2019' || c == '-')
+					&& i + 1 < text.length()
+					&& Character.isLetterOrDigit(text.charAt(i + 1)))
+				i += 2;
+			else
+				break;
+		}
+		return i;
+	}
+
+	private static boolean isNumber(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			if (!Character.isDigit(word.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+}
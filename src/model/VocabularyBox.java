@@ -1,14 +1,39 @@
 package model;
 
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.LinkedList;
 
 /**
@@ -20,18 +45,505 @@ import java.util.LinkedList;
  * the last case since there is no next case). If your answer was wrong, the
  * vocabulary goes back into case 0.
  * 
+ * Every case is a queue of nodes in a circular array, and a hash index maps
+ * every vocabulary to its node. So finding, inserting and removing a vocabulary
+ * take constant time, regardless of the number of vocabularies in the box.
+ * The index is not stored but rebuilt when a box is read. If the vocabulary
+ * of a card is changed by <tt>VocabularyCard.setEnglish</tt>, the card tells
+ * the box it is in, which rebuilds its index on its next use. A card is in
+ * the box it has been put into last, the cards of other boxes are not
+ * affected.
+ * 
+ * Boxes are stored in the binary format of <tt>BoxFile</tt>. Files written
+ * with Java serialization by earlier versions can still be loaded and are
+ * converted the next time the box is stored.
+ * 
+ * After <tt>startJournal</tt> every change is appended to a <tt>Journal</tt>
+ * next to the .vobo file, which is replayed when the box is loaded. This
+ * includes changes of the vocab and the translations of its cards, which the
+ * cards tell the box about. Once the journal has grown to
+ * <tt>COMPACT_SIZE</tt> bytes, a snapshot of the box is stored in the
+ * background and a new journal is started. The old journal is kept until
+ * the snapshot is stored, and the stored box records the generation of the
+ * new journal, so a crash at any time loses at most the changes of the last
+ * <tt>Journal.COMMIT_DELAY</tt> ms.
+ * 
+ * A box may be used by several threads, e.g. the clipboard thread and the
+ * event dispatch thread. Changes hold the lock of the box, one at a time.
+ * Reads never wait for the lock: the first node of every case, the card and
+ * case of every node and the index are published through volatile fields,
+ * and the volumes of the cases are published as a new array after every
+ * change. Only after a card has been renamed, <tt>find</tt> rebuilds the index
+ * if the lock is free, and otherwise uses the index built before.
+ * 
+ * Besides the cases, every card has a schedule of the SM-2 algorithm (see
+ * <tt>Scheduler</tt>). All nodes are kept in a <tt>DueHeap</tt> ordered by
+ * their due time, so the next due card is found in constant and reviewed in
+ * logarithmic time, and the cards due today are collected without looking
+ * at the others. Reviewing a card moves it through the cases like an answer.
+ * 
+ * Storing a box does not hold its lock while writing: it captures a
+ * <tt>Snapshot</tt> in constant time, and the cards of a case are only copied
+ * once, when the case is about to change or when the writer reaches it. So a
+ * change waits at most for the copying of a single case. Storing a journaled
+ * box in its own file is a compaction, so changes made meanwhile go to the
+ * new journal; otherwise the journal is only started if the box has not
+ * changed while it was stored, and the box is stored again if it has.
+ * 
  */
-public class VocabularyBox implements Serializable {
+public class VocabularyBox extends CardBox implements Serializable {
 
 	private static final long serialVersionUID = -3149647846060599036L;
 
-	private LinkedList<VocabularyCard>[] cases;
+	/**
+	 * The serialized form is an array of lists of cards, one per case.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField(
+			"cases", LinkedList[].class) };
 
-	private void checkCaseNo(int caseNo) {
-		if (caseNo < 0 || caseNo >= getNumberOfCases())
-			throw new IllegalArgumentException(
-					"Invalid case number! Must be between 0 and "
-							+ (getNumberOfCases() - 1));
+	private transient Case[] cases;
+	/** replaced as a whole when it is rebuilt */
+	private transient volatile Map<String, Node> index;
+	/** the number of renamed cards when the index was built */
+	private transient volatile int renames;
+	/** counts the renamed cards of this box */
+	private transient AtomicInteger renamedCards;
+	/** the volumes of the cases, replaced after every change */
+	private transient volatile int[] volumes;
+	/** held by all changes */
+	private transient ReentrantLock lock;
+	/** all nodes by due time */
+	private transient DueHeap heap;
+
+	/**
+	 * The size in bytes a journal grows to before the box is stored again.
+	 */
+	private static final long COMPACT_SIZE = 1 << 20;
+
+	/**
+	 * The number of times <tt>startJournal</tt> stores a box without holding
+	 * its lock before it holds the lock to store a box that keeps changing.
+	 */
+	private static final int UNLOCKED_STORES = 3;
+
+	private static final Random random = new Random();
+
+	private transient Journal journal;
+	/** the path of the file continued by the journal */
+	private transient String journalPath;
+	/** the thread storing the box in the background, null if there is none */
+	private transient Thread compaction;
+	/** whether the last compaction failed, so its old journal must be kept */
+	private transient volatile boolean compactionFailed;
+	/** the snapshots that have not copied all of their cases yet */
+	private transient List<Snapshot> snapshots;
+	/** the number of changes of the cases, to tell if a snapshot is current */
+	private transient long changes;
+	/** why the journal was not replayed completely when the box was loaded */
+	private transient String replayWarning;
+
+	/**
+	 * A card in a case.
+	 */
+	private static class Node {
+		private volatile VocabularyCard card;
+		private volatile int caseNo;
+		/** the index in the slots of its case */
+		private int slot = -1;
+		/** the index in the <tt>DueHeap</tt>, -1 if it is not contained */
+		private int heapIndex = -1;
+
+		Node(VocabularyCard card) {
+			this.card = card;
+		}
+	}
+
+	/**
+	 * The queue of nodes of a case, stored in a circular array. A node knows
+	 * its slot in the array, so it is removed in constant time by leaving
+	 * its slot empty. Empty slots at both ends are dropped right away, the
+	 * others when the array is packed, which happens when they outnumber the
+	 * nodes or the array is full. Putting the first node back by a number of
+	 * positions moves the nodes on the shorter side of its new slot, so it
+	 * takes time in the smaller of the number of positions and the number of
+	 * nodes behind it, plus the empty slots among them. Putting it back to
+	 * the end moves no other node.
+	 */
+	private static class Case implements Iterable<Node> {
+		private static final int MIN_CAPACITY = 16;
+
+		/** the first node, read without the lock of the box */
+		private volatile Node first = null;
+		/** the slots, a power of 2 */
+		private Node[] slots = new Node[MIN_CAPACITY];
+		/** the index of the first slot in use */
+		private int head = 0;
+		/** the number of slots in use, including empty ones */
+		private int length = 0;
+		private int size = 0;
+
+		/**
+		 * Retrieves the index in <tt>slots</tt> of the i-th slot in use.
+		 */
+		private int index(int i) {
+			return (head + i) & (slots.length - 1);
+		}
+
+		private void put(int i, Node node) {
+			int index = index(i);
+			slots[index] = node;
+			if (node != null)
+				node.slot = index;
+		}
+
+		void addLast(Node node) {
+			if (length == slots.length)
+				pack();
+			put(length, node);
+			length++;
+			size++;
+			first = slots[head];
+		}
+
+		/**
+		 * Puts the first node behind the <tt>position</tt> nodes following it.
+		 * Either these nodes are moved one slot towards the head or the nodes
+		 * behind them one slot towards the tail, whichever are fewer.
+		 */
+		void moveFirst(int position) {
+			Node node = slots[head];
+			if (2 * position > size) {
+				unlink(node);
+				insertBefore(size - position, node);
+				return;
+			}
+			int to = 0;
+			int from = 1;
+			while (to < position) {
+				Node next = slots[index(from++)];
+				if (next != null)
+					put(to++, next);
+			}
+			put(to, node);
+			// the slots passed on the way are left empty behind the node
+			while (++to < from) {
+				put(to, null);
+			}
+			while (slots[index(length - 1)] == null) {
+				length--;
+			}
+			first = slots[head];
+		}
+
+		/**
+		 * Inserts a node in front of the last <tt>count</tt> nodes by moving
+		 * them one slot towards the tail.
+		 */
+		private void insertBefore(int count, Node node) {
+			if (length == slots.length)
+				pack();
+			int to = length;
+			int from = length - 1;
+			while (to > length - count) {
+				Node previous = slots[index(from--)];
+				if (previous != null)
+					put(to--, previous);
+			}
+			put(to, node);
+			// the slots passed on the way are left empty in front of the node
+			while (--to > from) {
+				put(to, null);
+			}
+			length++;
+			size++;
+			first = slots[head];
+		}
+
+		void unlink(Node node) {
+			slots[node.slot] = null;
+			node.slot = -1;
+			size--;
+
+			while (length > 0 && slots[head] == null) {
+				head = (head + 1) & (slots.length - 1);
+				length--;
+			}
+			while (length > 0 && slots[index(length - 1)] == null) {
+				length--;
+			}
+			if (length - size > size)
+				pack();
+			first = length == 0 ? null : slots[head];
+		}
+
+		/**
+		 * Shuffles the case in place like <tt>Collections.shuffle</tt>
+		 * does, so the same seed gives the same order as before.
+		 */
+		void shuffle(Random random) {
+			if (length != size)
+				pack();
+			for (int i = size; i > 1; i--) {
+				int j = random.nextInt(i);
+				Node tmp = slots[index(i - 1)];
+				put(i - 1, slots[index(j)]);
+				put(j, tmp);
+			}
+			first = slots[head];
+		}
+
+		/**
+		 * Moves the nodes to the beginning of an array with room for as many
+		 * nodes again, leaving out the empty slots.
+		 */
+		private void pack() {
+			int capacity = MIN_CAPACITY;
+			while (capacity < 2 * size) {
+				capacity <<= 1;
+			}
+			Node[] packed = new Node[capacity];
+			int n = 0;
+			for (Node node : this) {
+				packed[n] = node;
+				node.slot = n;
+				n++;
+			}
+			slots = packed;
+			head = 0;
+			length = size;
+		}
+
+		@Override
+		public Iterator<Node> iterator() {
+			return new Iterator<Node>() {
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					while (i < length && slots[index(i)] == null) {
+						i++;
+					}
+					return i < length;
+				}
+
+				@Override
+				public Node next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					return slots[index(i++)];
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	/**
+	 * A binary min-heap of nodes ordered by the due time of their cards. Every
+	 * node knows its index in the heap, so it can be removed or reordered in
+	 * O(log n).
+	 */
+	private static class DueHeap {
+		private static final Comparator<Node> order = new Comparator<Node>() {
+			@Override
+			public int compare(Node a, Node b) {
+				return Long.compare(a.card.getDue(), b.card.getDue());
+			}
+		};
+
+		private Node[] nodes = new Node[16];
+		private int size = 0;
+
+		Node peek() {
+			return size == 0 ? null : nodes[0];
+		}
+
+		void add(Node node) {
+			if (size == nodes.length)
+				nodes = Arrays.copyOf(nodes, 2 * size);
+			nodes[size] = node;
+			node.heapIndex = size;
+			size++;
+			up(node);
+		}
+
+		void remove(Node node) {
+			int i = node.heapIndex;
+			node.heapIndex = -1;
+			size--;
+			Node last = nodes[size];
+			nodes[size] = null;
+			if (i == size)
+				return;
+
+			nodes[i] = last;
+			last.heapIndex = i;
+			update(last);
+		}
+
+		/**
+		 * Moves a node to its place after its due time has changed.
+		 */
+		void update(Node node) {
+			up(node);
+			down(node);
+		}
+
+		/**
+		 * Retrieves the cards due at <tt>until</tt> in order of their due
+		 * times. The heap is walked from its root and a subtree is left out
+		 * as soon as its root is not due, so only the due nodes and their
+		 * children are looked at.
+		 */
+		List<VocabularyCard> due(long until, int limit) {
+			List<VocabularyCard> res = new ArrayList<VocabularyCard>();
+			PriorityQueue<Node> next = new PriorityQueue<Node>(11, order);
+			if (size > 0 && nodes[0].card.getDue() <= until)
+				next.add(nodes[0]);
+			while (!next.isEmpty() && res.size() < limit) {
+				Node node = next.poll();
+				res.add(node.card);
+				for (int i = 2 * node.heapIndex + 1; i <= 2 * node.heapIndex + 2
+						&& i < size; i++) {
+					if (nodes[i].card.getDue() <= until)
+						next.add(nodes[i]);
+				}
+			}
+			return res;
+		}
+
+		private void up(Node node) {
+			int i = node.heapIndex;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (order.compare(nodes[parent], node) <= 0)
+					break;
+				move(nodes[parent], i);
+				i = parent;
+			}
+			move(node, i);
+		}
+
+		private void down(Node node) {
+			int i = node.heapIndex;
+			while (2 * i + 1 < size) {
+				int child = 2 * i + 1;
+				if (child + 1 < size
+						&& order.compare(nodes[child + 1], nodes[child]) < 0)
+					child++;
+				if (order.compare(node, nodes[child]) <= 0)
+					break;
+				move(nodes[child], i);
+				i = child;
+			}
+			move(node, i);
+		}
+
+		private void move(Node node, int i) {
+			nodes[i] = node;
+			node.heapIndex = i;
+		}
+	}
+
+	/**
+	 * A version of the box captured by <tt>snapshot</tt>. Capturing takes
+	 * constant time. A case is copied when it is about to change, while the
+	 * change holds the lock of the box, or when <tt>getCases</tt> reaches it,
+	 * whichever comes first.
+	 */
+	private class Snapshot {
+		private final List<List<VocabularyCard>> frozen;
+
+		Snapshot() {
+			frozen = new ArrayList<List<VocabularyCard>>(
+					Collections.<List<VocabularyCard>> nCopies(cases.length,
+							null));
+		}
+
+		/**
+		 * Copies a case unless it has been copied already. The caller holds
+		 * the lock of the box.
+		 */
+		void freeze(int caseNo) {
+			if (frozen.get(caseNo) != null)
+				return;
+
+			List<VocabularyCard> cards = new ArrayList<VocabularyCard>(
+					cases[caseNo].size);
+			for (Node n : cases[caseNo]) {
+				// cards are edited in place, so they are copied as well
+				cards.add(n.card.copy());
+			}
+			frozen.set(caseNo, cards);
+		}
+
+		/**
+		 * Retrieves the cards of every case as they were when the snapshot was
+		 * captured. Cases not copied yet are copied one at a time, so changes
+		 * of the box wait for a single case at most.
+		 */
+		List<List<VocabularyCard>> getCases() {
+			for (int i = 0; i < frozen.size(); i++) {
+				lock.lock();
+				try {
+					freeze(i);
+				} finally {
+					lock.unlock();
+				}
+			}
+			lock.lock();
+			try {
+				snapshots.remove(this);
+			} finally {
+				lock.unlock();
+			}
+			return frozen;
+		}
+	}
+
+	/**
+	 * Captures the current version of the box.
+	 */
+	private Snapshot snapshot() {
+		lock.lock();
+		try {
+			Snapshot snapshot = new Snapshot();
+			snapshots.add(snapshot);
+			return snapshot;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	List<List<VocabularyCard>> getCases() {
+		return snapshot().getCases();
+	}
+
+	/**
+	 * Publishes the volumes of the cases after a change. The caller holds the
+	 * lock of the box.
+	 */
+	private void publish() {
+		int[] res = new int[cases.length];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = cases[i].size;
+		}
+		volumes = res;
+	}
+
+	/**
+	 * Lets the snapshots copy a case before it changes. The caller holds the
+	 * lock of the box.
+	 */
+	private void beforeChange(int caseNo) {
+		changes++;
+		for (Snapshot snapshot : snapshots) {
+			snapshot.freeze(caseNo);
+		}
 	}
 
 	/**
@@ -40,16 +552,26 @@ public class VocabularyBox implements Serializable {
 	 * @param size
 	 *            The number of cases the VocabularyBox consists of.
 	 */
-	@SuppressWarnings("unchecked")
 	public VocabularyBox(int size) {
 		if (size <= 0)
 			throw new IllegalArgumentException(
 					"The number of cases must be greater than 0!");
 
-		cases = new LinkedList[size];
+		init(size);
+	}
+
+	private void init(int size) {
+		cases = new Case[size];
 		for (int i = 0; i < size; i++) {
-			cases[i] = new LinkedList<VocabularyCard>();
+			cases[i] = new Case();
 		}
+		index = new ConcurrentHashMap<String, Node>();
+		renamedCards = new AtomicInteger();
+		renames = 0;
+		volumes = new int[size];
+		lock = new ReentrantLock();
+		heap = new DueHeap();
+		snapshots = new ArrayList<Snapshot>(1);
 	}
 
 	/**
@@ -60,10 +582,13 @@ public class VocabularyBox implements Serializable {
 	}
 
 	/**
-	 * Deserializes a VocabularyBox from a file.
+	 * Loads a VocabularyBox from a file in the format of <tt>BoxFile</tt> or,
+	 * if written by an earlier version, in the serialized format. The journal
+	 * continuing the file is replayed up to its first record that is torn or
+	 * does not fit to the box, see <tt>getReplayWarning</tt>.
 	 * 
 	 * @param path
-	 *            Path to the file to deserialize from.
+	 *            Path to the file to load from.
 	 * @return A new VocabularyBox object read from <tt>path</tt>.
 	 * @throws ClassNotFoundException
 	 *             if the class of the serialized object cannot be found
@@ -71,301 +596,850 @@ public class VocabularyBox implements Serializable {
 	 */
 	public static VocabularyBox loadFromFile(String path)
 			throws ClassNotFoundException, IOException {
-		ObjectInputStream ois;
-		VocabularyBox ret;
+		FileInputStream in = new FileInputStream(path);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(4);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0)
+					throw new EOFException(path + " is too short");
+			}
+			channel.position(0);
+
+			if (BoxFile.matches(header.getInt(0))) {
+				try {
+					BoxFile.Contents contents = BoxFile.read(channel);
+					VocabularyBox box = fromCases(contents.getCases());
+					box.replayWarning = Journal.replay(path, box,
+							contents.getGeneration());
+					return box;
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new RuntimeException("IOException occured:\n"
+							+ e.getMessage());
+				}
+			}
+
+			ObjectInputStream ois = new LegacyInputStream(
+					new BufferedInputStream(in));
+			try {
+				return (VocabularyBox) ois.readObject();
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new RuntimeException("IOException occured:\n"
+						+ e.getMessage());
+			}
+		} finally {
+			in.close();
+		}
+	}
 
-		ois = new ObjectInputStream(new FileInputStream(path));
+	/**
+	 * Converts a file written with Java serialization by an earlier version
+	 * into the format of <tt>BoxFile</tt>. Files already in that format are
+	 * just copied.
+	 * 
+	 * @param from
+	 *            Path to the file to convert.
+	 * @param to
+	 *            Path to the converted file, may be equal to <tt>from</tt>.
+	 * @throws ClassNotFoundException
+	 *             if the class of the serialized object cannot be found
+	 * @throws IOException
+	 */
+	public static void convertFile(String from, String to)
+			throws ClassNotFoundException, IOException {
+		loadFromFile(from).storeInFile(to);
+	}
+
+	/**
+	 * Creates a box of stored cases. Renaming a card can give two cards the
+	 * same vocab, so unlike <tt>add</tt> such cards are kept as they are
+	 * stored, which the journal relies on.
+	 */
+	static VocabularyBox fromCases(List<List<VocabularyCard>> lists) {
+		VocabularyBox box = new VocabularyBox(lists.size());
+		for (int i = 0; i < lists.size(); i++) {
+			for (VocabularyCard card : lists.get(i)) {
+				Node node = new Node(box.own(card));
+				node.caseNo = i;
+				box.cases[i].addLast(node);
+				box.heap.add(node);
+			}
+		}
+		box.rebuildIndex();
+		box.publish();
+		return box;
+	}
+
+	/**
+	 * Reads serialized boxes, but only resolves the classes a box consists
+	 * of, so a manipulated file cannot instantiate arbitrary classes.
+	 */
+	private static class LegacyInputStream extends ObjectInputStream {
+		private static final Set<String> CLASSES = new HashSet<String>(
+				Arrays.asList(VocabularyBox.class.getName(),
+						VocabularyCard.class.getName(), "[Ljava.util.LinkedList;",
+						"java.util.LinkedList", "java.util.ArrayList",
+						"java.util.Arrays$ArrayList", "[Ljava.lang.String;",
+						"java.lang.String"));
+
+		LegacyInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			if (!CLASSES.contains(desc.getName()))
+				throw new InvalidClassException(desc.getName(),
+						"not part of a VocabularyBox");
+			return super.resolveClass(desc);
+		}
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		List<List<VocabularyCard>> cards = getCases();
+		LinkedList<?>[] lists = new LinkedList<?>[cards.size()];
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = new LinkedList<VocabularyCard>(cards.get(i));
+		}
+		out.putFields().put("cases", lists);
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		LinkedList<VocabularyCard>[] lists = (LinkedList<VocabularyCard>[]) in
+				.readFields().get("cases", null);
+		if (lists == null || lists.length == 0)
+			throw new InvalidObjectException("A VocabularyBox needs cases");
+
+		init(lists.length);
+		for (int i = 0; i < lists.length; i++) {
+			for (VocabularyCard card : lists[i]) {
+				add(i, card);
+			}
+		}
+		publish();
+	}
+
+	/**
+	 * Retrieves the node of a vocabulary, rebuilding the index first if a
+	 * card has been renamed since it was built. The caller holds the lock of
+	 * the box.
+	 */
+	private Node node(String vocab) {
+		if (renames != renamedCards.get())
+			rebuildIndex();
+		return index.get(vocab);
+	}
+
+	/**
+	 * Method to be invoked by a card of this box whose vocab has changed from
+	 * <tt>oldVocab</tt> to <tt>newVocab</tt>.
+	 */
+	void renamed(String oldVocab, String newVocab) {
+		renamedCards.incrementAndGet();
+		lock.lock();
 		try {
-			ret = (VocabularyBox) ois.readObject();
-			ois.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new RuntimeException("IOException occured:\n"
-					+ e.getMessage());
+			// the card is changed already, so there is nothing to freeze
+			changes++;
+			if (journal != null) {
+				journal.rename(oldVocab, newVocab);
+				compactIfNeeded();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Method to be invoked by a card of this box whose translations have
+	 * changed.
+	 */
+	void edited(VocabularyCard card) {
+		lock.lock();
+		try {
+			changes++;
+			if (journal != null) {
+				journal.edit(card);
+				compactIfNeeded();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Makes this box the one told when the vocab or the translations of
+	 * <tt>card</tt> change.
+	 */
+	private VocabularyCard own(VocabularyCard card) {
+		card.setBox(this);
+		return card;
+	}
+
+	/**
+	 * Replaces the card of a node. The replaced card is not in the box
+	 * anymore, so its changes are not told to the box.
+	 */
+	private void setCard(Node node, VocabularyCard card) {
+		node.card.setBox(null);
+		node.card = own(card);
+	}
+
+	private void rebuildIndex() {
+		int current = renamedCards.get();
+		Map<String, Node> res = new ConcurrentHashMap<String, Node>();
+		// the first node of a vocabulary wins, like a linear search
+		for (Case c : cases) {
+			for (Node n : c) {
+				if (!res.containsKey(n.card.getEnglish()))
+					res.put(n.card.getEnglish(), n);
+			}
 		}
+		index = res;
+		renames = current;
+	}
 
-		return ret;
+	/**
+	 * Appends a card that is not contained in the box yet to a case.
+	 */
+	private boolean add(int caseNo, VocabularyCard card) {
+		Node node = node(card.getEnglish());
+		if (node != null) {
+			// only possible for boxes stored with duplicates
+			beforeChange(node.caseNo);
+			setCard(node, node.card.merge(card));
+			return false;
+		}
+
+		beforeChange(caseNo);
+		node = new Node(own(card));
+		node.caseNo = caseNo;
+		cases[caseNo].addLast(node);
+		index.put(card.getEnglish(), node);
+		heap.add(node);
+		return true;
+	}
+
+	private void unlink(Node node) {
+		beforeChange(node.caseNo);
+		cases[node.caseNo].unlink(node);
+		index.remove(node.card.getEnglish());
+		heap.remove(node);
+	}
+
+	/**
+	 * Moves the first card of a case to the end of another one.
+	 */
+	private void moveFirst(int from, int to) {
+		Node node = cases[from].first;
+		if (node == null)
+			throw new NoSuchElementException();
+		beforeChange(from);
+		beforeChange(to);
+		cases[from].unlink(node);
+		node.caseNo = to;
+		cases[to].addLast(node);
 	}
 
 	/**
-	 * Serializes the VocabularyBox into the given path.
+	 * Stores the VocabularyBox into the given path in the format of
+	 * <tt>BoxFile</tt>. If the changes of the box are journaled to
+	 * <tt>path</tt>, a new journal is started.
 	 * 
 	 * @param path
 	 *            Path to the file where to store the VocabularyBox in.
 	 * @throws FileNotFoundException
 	 *             if the given file does not exist
 	 */
-	public synchronized void storeInFile(String path) throws FileNotFoundException {
-		ObjectOutputStream oos = null;
+	@Override
+	public void storeInFile(String path) throws FileNotFoundException {
+		boolean journaled;
+		lock.lock();
 		try {
-			oos = new ObjectOutputStream(new FileOutputStream(path));
+			journaled = journal != null && isJournalPath(path);
+		} finally {
+			lock.unlock();
+		}
 
-			oos.writeObject(this);
+		try {
+			if (journaled)
+				startJournal(path);
+			else
+				store(path, getCases());
 			System.out.println("VocabularyBox written to " + path);
+		} catch (FileNotFoundException e) {
+			throw e;
 		} catch (IOException e) {
 			e.printStackTrace();
 			throw new RuntimeException("IOException occured:\n"
 					+ e.getMessage());
-		} finally {
-			if(oos != null) {
-				try {
-					oos.close();
-				} catch (IOException e) {
-				}
-			}
 		}
 	}
 
 	/**
-	 * Retrieves the number of cases this VocabularyBox consists of.
+	 * Stores <tt>cases</tt> in <tt>path</tt> and deletes the journals of
+	 * <tt>path</tt>, which are obsolete then.
 	 * 
-	 * @return The number of cases.
+	 * @return the generation of a journal continuing <tt>path</tt>
 	 */
-	public int getNumberOfCases() {
-		return cases.length;
+	static int store(String path, List<List<VocabularyCard>> cases)
+			throws IOException {
+		int generation = Journal.nextGeneration(path);
+		BoxFile.store(path, cases, generation);
+		Journal.delete(path);
+		return generation;
 	}
 
 	/**
-	 * Searches for a vocabulary and returns the number of the containing case
-	 * or -1 if none of the cases contains it.
+	 * Journals all further changes of this box next to the file
+	 * <tt>path</tt>. The box is stored in <tt>path</tt> first, replacing its
+	 * contents, so <tt>path</tt> is usually the file the box has been loaded
+	 * from. The box may be changed while it is stored.
 	 * 
-	 * @param vocab
-	 *            The vocabulary searched for.
-	 * @return The number of the case <tt>vocab</tt> were found in or -1 if
-	 *         <tt>vocab</tt> was not found in any of the cases.
+	 * @param path
+	 *            Path to the file continued by the journal.
+	 * @throws IOException
+	 *             if the box could not be stored or the journal could not be
+	 *             created
 	 */
-	public int find(String vocab) {
-		return find(new VocabularyCard(vocab));
+	public void startJournal(String path) throws IOException {
+		if (compactInto(path))
+			return;
+
+		// a running compaction needs the lock to finish
+		closeJournal();
+		awaitCompaction();
+
+		for (int attempt = 0;; attempt++) {
+			Snapshot snapshot;
+			long version;
+			lock.lock();
+			try {
+				closeJournal();
+				if (attempt == UNLOCKED_STORES) {
+					int generation = store(path, getCases());
+					compactionFailed = false;
+					journal = Journal.create(path, generation);
+					journalPath = path;
+					return;
+				}
+				snapshot = snapshot();
+				version = changes;
+			} finally {
+				lock.unlock();
+			}
+
+			int generation = store(path, snapshot.getCases());
+
+			lock.lock();
+			try {
+				// changes made while storing are neither stored nor journaled
+				if (changes == version && journal == null) {
+					compactionFailed = false;
+					journal = Journal.create(path, generation);
+					journalPath = path;
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
 	}
 
 	/**
-	 * Searches for a vocabulary and returns the number of the containing case
-	 * or -1 if none of the cases contains it.
+	 * Stores the box in <tt>path</tt> by a compaction if its changes are
+	 * journaled to <tt>path</tt>, and waits until it is stored.
 	 * 
-	 * @param card
-	 *            The vocabulary searched for.
-	 * @return The number of the case <tt>vocab</tt> were found in or -1 if
-	 *         <tt>vocab</tt> was not found in any of the cases.
+	 * @return false if the changes are not journaled to <tt>path</tt>
+	 * @throws IOException
+	 *             if the box could not be stored
 	 */
-	public int find(VocabularyCard card) {
-		for (int i = 0; i < getNumberOfCases(); i++) {
-			if (cases[i].contains(card))
-				return i;
+	private boolean compactInto(String path) throws IOException {
+		boolean started = false;
+		while (!started) {
+			// a running compaction needs the lock to finish
+			awaitCompaction();
+			lock.lock();
+			try {
+				if (journal == null || !isJournalPath(path)
+						|| compactionFailed)
+					return false;
+				// another compaction may have started meanwhile
+				if (compaction == null || !compaction.isAlive()) {
+					if (!compact())
+						return false;
+					started = true;
+				}
+			} finally {
+				lock.unlock();
+			}
 		}
 
-		return -1;
+		awaitCompaction();
+		if (compactionFailed)
+			throw new IOException("VocabularyBox could not be stored in "
+					+ path);
+		return true;
 	}
 
 	/**
-	 * Searches for a vocabulary in the given case.
-	 * 
-	 * @param vocab
-	 *            The vocabulary searched for.
-	 * @param caseNo
-	 *            The number of the case searched in.
-	 * @return true if the given case contains <tt>vocab</tt>, false otherwise
-	 * @throws IllegalArgumentException
-	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 * Syncs and closes the journal started by <tt>startJournal</tt>. Further
+	 * changes are not journaled anymore.
 	 */
-	public boolean find(String vocab, int caseNo) {
-		return find(new VocabularyCard(vocab), caseNo);
+	public void closeJournal() {
+		lock.lock();
+		try {
+			if (journal == null)
+				return;
+			try {
+				journal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			journal = null;
+			journalPath = null;
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	/**
-	 * Searches for a vocabulary in the given case.
-	 * 
-	 * @param card
-	 *            The vocabulary searched for.
-	 * @param caseNo
-	 *            The number of the case searched in.
-	 * @return true if the given case contains <tt>vocab</tt>, false otherwise
-	 * @throws IllegalArgumentException
-	 *             if <tt>caseNo</tt> is not in [0,size[.
-	 */
-	public boolean find(VocabularyCard card, int caseNo) {
-		checkCaseNo(caseNo);
+	private boolean isJournalPath(String path) {
+		return new File(path).getAbsoluteFile().equals(
+				new File(journalPath).getAbsoluteFile());
+	}
 
-		return cases[caseNo].contains(card);
+	private void awaitCompaction() {
+		Thread thread;
+		lock.lock();
+		try {
+			thread = compaction;
+		} finally {
+			lock.unlock();
+		}
+		boolean interrupted = false;
+		while (thread != null && thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
 	}
 
 	/**
-	 * Removes a vocabulary from the VocabularyBox if it is contained.
-	 * 
-	 * @param vocab
-	 *            The vocabulary to remove.
-	 * @return the removed VocabularyCard or null if it was not found.
+	 * Starts a new journal and stores a snapshot of the box in the background
+	 * if the journal has grown to <tt>COMPACT_SIZE</tt>.
 	 */
-	public VocabularyCard remove(String vocab) {
-		return remove(new VocabularyCard(vocab));
+	private void compactIfNeeded() {
+		if (journal.size() < COMPACT_SIZE || compactionFailed
+				|| (compaction != null && compaction.isAlive()))
+			return;
+
+		compact();
 	}
 
 	/**
-	 * Removes a vocabulary from the VocabularyBox if it is contained.
+	 * Starts a new journal and stores a snapshot of the box in the
+	 * background. The caller holds the lock of the box.
 	 * 
-	 * @param card
-	 *            The vocabulary to remove.
-	 * @return the removed VocabularyCard or null if it was not found.
+	 * @return false if no journal could be started, so journaling stopped
 	 */
+	private boolean compact() {
+		final String path = journalPath;
+		final Snapshot snapshot = snapshot();
+		final int generation = journal.getGeneration() + 1;
+		try {
+			journal.close();
+			Files.move(Paths.get(Journal.pathOf(path)),
+					Paths.get(Journal.oldPathOf(path)),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			journal = Journal.create(path, generation);
+		} catch (IOException e) {
+			// journaling stops, storeInFile still stores the box
+			e.printStackTrace();
+			journal = null;
+			snapshots.remove(snapshot);
+			return false;
+		}
+
+		compaction = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					BoxFile.store(path, snapshot.getCases(), generation);
+					new File(Journal.oldPathOf(path)).delete();
+				} catch (IOException e) {
+					e.printStackTrace();
+					// the old journal must not be replaced until it is stored
+					compactionFailed = true;
+				}
+			}
+
+		}, "VocabularyBox-compaction");
+		compaction.setDaemon(true);
+		compaction.start();
+		return true;
+	}
+
+	@Override
+	public int getNumberOfCases() {
+		return cases.length;
+	}
+
+	@Override
+	public int find(VocabularyCard card) {
+		if (renames != renamedCards.get() && lock.tryLock()) {
+			try {
+				rebuildIndex();
+			} finally {
+				lock.unlock();
+			}
+		}
+		Node node = index.get(card.getEnglish());
+		return node == null ? -1 : node.caseNo;
+	}
+
+	@Override
 	public VocabularyCard remove(VocabularyCard card) {
-		System.out.println("VocabularyBox.remove("+card.getEnglish()+")");
-		for (int i = 0; i < getNumberOfCases(); i++) {
-			for (int j = 0; j < cases[i].size(); j++) {
-				if (cases[i].get(j).equals(card))
-					return cases[i].remove(j);
+		lock.lock();
+		try {
+			Node node = node(card.getEnglish());
+			if (node == null)
+				return null;
+
+			unlink(node);
+			node.card.setBox(null);
+			if (journal != null) {
+				journal.remove(card.getEnglish());
+				compactIfNeeded();
 			}
+			return node.card;
+		} finally {
+			publish();
+			lock.unlock();
 		}
+	}
+
+	@Override
+	public boolean insert(String vocab) {
+		lock.lock();
+		try {
+			if (find(vocab) >= 0 || !add(0, new VocabularyCard(vocab)))
+				return false;
 
-		return null;
+			if (journal != null) {
+				journal.insert(vocab);
+				compactIfNeeded();
+			}
+			return true;
+		} finally {
+			publish();
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean insert(VocabularyCard card) {
+		lock.lock();
+		try {
+			Node node = node(card.getEnglish());
+			boolean res;
+			if (node == null) {
+				res = add(0, card);
+			} else {
+				beforeChange(node.caseNo);
+				setCard(node, node.card.merge(card));
+				// the node is moved, so find() sees it all the time
+				moveToEnd(node, 0);
+				res = true;
+			}
+
+			if (journal != null) {
+				journal.insert(card);
+				compactIfNeeded();
+			}
+			return res;
+		} finally {
+			publish();
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public VocabularyCard getNextVocabInCase(int caseNo) {
+		checkCaseNo(caseNo);
+		Node head = cases[caseNo].first;
+		return head == null ? null : head.card;
+	}
+
+	@Override
+	public void answerVocabInCase(int caseNo, boolean correct) {
+		lock.lock();
+		try {
+			checkCaseNo(caseNo);
+			Node node = cases[caseNo].first;
+
+			if (correct) {
+				int nextCase = Math.min(getNumberOfCases() - 1, caseNo + 1);
+				moveFirst(caseNo, nextCase);
+			} else {
+				moveFirst(caseNo, 0);
+			}
+
+			if (journal != null) {
+				journal.answer(caseNo, correct, node.card);
+				compactIfNeeded();
+			}
+		} finally {
+			publish();
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void answerVocabInCaseZeroWithLimit(int limit, boolean correct) {
+		lock.lock();
+		try {
+			if(limit < 0)
+				throw new IllegalArgumentException("limit must be non-negative");
+		
+			Node node = cases[0].first;
+			if(correct) {
+				moveFirst(0, Math.min(1, cases.length-1));
+			} else {
+				if (node == null)
+					throw new NoSuchElementException();
+				beforeChange(0);
+				cases[0].moveFirst(Math.min(limit, cases[0].size - 1));
+			}
+		
+			if (journal != null) {
+				journal.answerWithLimit(limit, correct, node.card);
+				compactIfNeeded();
+			}
+		} finally {
+			publish();
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Inserts a new vocabulary at the end of case 0 of the VocabularyBox if it
-	 * is not contained in any case.
-	 * 
-	 * @param vocab
-	 *            The vocabulary to insert.
-	 * @return true if insertion was successful, false otherwise (probably
-	 *         because <tt>vocab</tt> is already in the VocabularyBox).
+	 * Replaces the first card of a case by the card recorded by the journal
+	 * when it was answered, since its translations or its vocab may have been
+	 * changed before.
 	 */
-	public boolean insert(String vocab) {
-		if (find(vocab) < 0)
-			return cases[0].add(new VocabularyCard(vocab));
+	void restoreNextVocabInCase(int caseNo, VocabularyCard card) {
+		lock.lock();
+		try {
+			checkCaseNo(caseNo);
+			Node node = cases[caseNo].first;
+			if (node == null)
+				throw new NoSuchElementException();
 
-		return false;
+			boolean renamed = !card.getEnglish().equals(node.card.getEnglish());
+			beforeChange(caseNo);
+			// the journal does not record the schedule of answered cards
+			card.schedule(node.card);
+			setCard(node, card);
+			if (renamed)
+				rebuildIndex();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Inserts a new vocabulary at the end of case 0 of the VocabularyBox if it
-	 * is not contained in any case. Otherwise it will be removed from that
-	 * case, its translations will be merged and it will be reinserted into case
-	 * 0.
-	 * 
-	 * @param card
-	 *            The vocabulary to insert
-	 * @return true if insertion or merging and reinsertion respectively was
-	 *         successful, false otherwise
+	 * Renames a card as recorded by the journal. A stored snapshot may
+	 * contain the card renamed already, since cards are renamed in place.
 	 */
-	public boolean insert(VocabularyCard card) {
-		int caseNo = find(card.getEnglish());
-		if (caseNo < 0) {
-			return cases[0].add(card);
+	void restoreRename(String oldVocab, String newVocab) {
+		lock.lock();
+		try {
+			Node node = node(oldVocab);
+			if (node == null) {
+				if (node(newVocab) == null)
+					throw new NoSuchElementException(oldVocab);
+				return;
+			}
+
+			beforeChange(node.caseNo);
+			node.card.setEnglish(newVocab);
+		} finally {
+			lock.unlock();
 		}
-		int index = cases[caseNo].lastIndexOf(card);
-		VocabularyCard vc = cases[caseNo].get(index).merge(card);
-		cases[caseNo].remove(index);
-		return cases[0].add(vc);
 	}
 
 	/**
-	 * Gets the first vocabulary of the given case or null if that case is
-	 * empty.
-	 * 
-	 * @param caseNo
-	 *            The number of the case the vocabulary is taken from.
-	 * @return The first vocabulary in the case with the number caseNo or null
-	 *         if that case is empty.
-	 * @throws IllegalArgumentException
-	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 * Replaces the card of the same vocab by the card recorded by the journal
+	 * when its translations were changed.
 	 */
-	public VocabularyCard getNextVocabInCase(int caseNo) {
-		checkCaseNo(caseNo);
-		if (cases[caseNo].isEmpty())
-			return null;
-		return cases[caseNo].peek();
+	void restoreEdit(VocabularyCard card) {
+		lock.lock();
+		try {
+			Node node = node(card.getEnglish());
+			if (node == null)
+				throw new NoSuchElementException(card.getEnglish());
+
+			beforeChange(node.caseNo);
+			card.schedule(node.card);
+			setCard(node, card);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public VocabularyCard getNextDueVocab() {
+		lock.lock();
+		try {
+			Node node = heap.peek();
+			return node == null ? null : node.card;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Answers the vocabulary got by getNextVocabInCase(). Answering means it is
-	 * removed from the current case and inserted into the next one
-	 * (respectively it stays in the last case since there is no next one) if it
-	 * was answered correctly or it is put back into case 0 if it was answered
-	 * wrong.
-	 * 
-	 * @param caseNo
-	 *            The number of the case the answered vocabulary was taken from.
-	 * @param correct
-	 *            Must be true if the answer was correct and false otherwise.
-	 * @throws NoSuchElementException
-	 *             if the given case is empty.
-	 * @throws IllegalArgumentException
-	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 * Takes time in the number of returned cards, not in the size of the
+	 * VocabularyBox.
 	 */
-	public void answerVocabInCase(int caseNo, boolean correct) {
-		checkCaseNo(caseNo);
+	@Override
+	public List<VocabularyCard> getDueVocabs(long until, int limit) {
+		lock.lock();
+		try {
+			return heap.due(until, limit);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void reviewVocab(VocabularyCard card, int quality) {
+		Scheduler.checkQuality(quality);
 
-		if (correct) {
-			int nextCase = Math.min(getNumberOfCases() - 1, caseNo + 1);
-			cases[nextCase].add(cases[caseNo].remove());
-		} else {
-			cases[0].add(cases[caseNo].remove());
+		lock.lock();
+		try {
+			Node node = node(card.getEnglish());
+			if (node == null)
+				throw new NoSuchElementException("'" + card.getEnglish()
+						+ "' is not in the VocabularyBox");
+
+			VocabularyCard reviewed = node.card.copy();
+			Scheduler.review(reviewed, quality, System.currentTimeMillis());
+			int caseNo = quality >= Scheduler.PASSING_QUALITY ? Math.min(
+					cases.length - 1, node.caseNo + 1) : 0;
+			reschedule(node, caseNo, reviewed);
+
+			if (journal != null) {
+				journal.review(caseNo, node.card);
+				compactIfNeeded();
+			}
+		} finally {
+			publish();
+			lock.unlock();
 		}
 	}
-	
+
 	/**
-	 * Similar to answerVocabInCase() but only applicable for case 0.
-	 * If the answer is not correct, the card is at most <tt>limit<tt>
-	 * positions put back instead of put back to the end.
-	 * 
-	 * @param limit
-	 * 			Maximum number of positions the card is put back.
-	 * @param correct
-	 * 			Must be true if the answer was correct and false otherwise.
-	 * @throws IllegalArgumentException
-	 * 			if <tt>limit<tt> is negative.
+	 * Repeats a review recorded by the journal. The recorded card replaces
+	 * the card of the same vocab, which has been renamed to it before if
+	 * necessary.
 	 */
-	public void answerVocabInCaseZeroWithLimit(int limit, boolean correct) {
-		if(limit < 0)
-			throw new IllegalArgumentException("limit must be non-negative");
-		
-		if(correct) {
-			cases[Math.min(1, cases.length-1)].add(cases[0].remove());
-		} else {
-			limit = Math.min(limit, cases[0].size()-1);
-			cases[0].add(limit, cases[0].remove());
+	void restoreReview(int caseNo, VocabularyCard card) {
+		lock.lock();
+		try {
+			checkCaseNo(caseNo);
+			Node node = node(card.getEnglish());
+			if (node == null)
+				throw new NoSuchElementException(card.getEnglish());
+
+			beforeChange(node.caseNo);
+			setCard(node, card);
+			reschedule(node, caseNo, card);
+		} finally {
+			publish();
+			lock.unlock();
 		}
 	}
 
 	/**
-	 * Shuffles a case due to learning the vocabularies themselves instead of
-	 * their sequence.
-	 * 
-	 * @param caseNo
-	 *            The number of the case to be shuffled.
-	 * @throws IllegalArgumentException
-	 *             if <tt>caseNo</tt> is not in [0,size[.
+	 * Gives a card the schedule of <tt>schedule</tt> and moves it to the end
+	 * of a case.
+	 */
+	private void reschedule(Node node, int caseNo, VocabularyCard schedule) {
+		beforeChange(node.caseNo);
+		node.card.schedule(schedule);
+		heap.update(node);
+		moveToEnd(node, caseNo);
+	}
+
+	/**
+	 * Moves a node to the end of a case, keeping its entries in the index
+	 * and the heap.
 	 */
+	private void moveToEnd(Node node, int caseNo) {
+		beforeChange(node.caseNo);
+		beforeChange(caseNo);
+		cases[node.caseNo].unlink(node);
+		node.caseNo = caseNo;
+		cases[caseNo].addLast(node);
+	}
+
+	@Override
 	public void shuffleCase(int caseNo) {
-		checkCaseNo(caseNo);
+		lock.lock();
+		try {
+			long seed = random.nextLong();
+			shuffleCase(caseNo, seed);
 
-		Collections.shuffle((LinkedList<VocabularyCard>) cases[caseNo]);
+			if (journal != null) {
+				journal.shuffle(caseNo, seed);
+				compactIfNeeded();
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Retrieves an array indicating the amount of vocabularies in each case.
-	 * 
-	 * @return An array indicating the amount of vocabularies in each case.
+	 * Shuffles a case with a random generator seeded with <tt>seed</tt>, so
+	 * the journal can repeat the shuffle.
 	 */
-	public int[] getCaseVolumes() {
-		int[] res = new int[getNumberOfCases()];
-		for (int i = 0; i < res.length; i++) {
-			res[i] = cases[i].size();
-		}
+	void shuffleCase(int caseNo, long seed) {
+		lock.lock();
+		try {
+			checkCaseNo(caseNo);
 
-		return res;
+			beforeChange(caseNo);
+			cases[caseNo].shuffle(new Random(seed));
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Retrieves the total amount of all vocabularies in this VocabularyBox.
+	 * Retrieves why the journal continuing the file the box was loaded from
+	 * was not replayed completely.
 	 * 
-	 * @return The total amount of vocabularies.
+	 * @return A message telling which changes were left out or null if all
+	 *         changes were replayed.
 	 */
-	public int getVolume() {
-		int res = 0;
-		for (int i = 0; i < getNumberOfCases(); i++) {
-			res += cases[i].size();
-		}
+	public String getReplayWarning() {
+		return replayWarning;
+	}
 
-		return res;
+	@Override
+	public int[] getCaseVolumes() {
+		return volumes.clone();
 	}
 
 	/**
@@ -379,34 +1453,38 @@ public class VocabularyBox implements Serializable {
 	 * cases and their translations will be merged as well.
 	 * 
 	 * @param other
-	 *            The other VocabularyBox this box will be merged with.
+	 *            The other box this box will be merged with, it may keep its
+	 *            cards in a database.
 	 * @return A new VocabularyBox containing the vocabularies of <tt>this</tt>
 	 *         and <tt>other</tt> in their original cases.
 	 */
-	public VocabularyBox merge(VocabularyBox other) {
+	public VocabularyBox merge(CardBox other) {
 		VocabularyBox box = new VocabularyBox(Math.max(this.getNumberOfCases(),
 				other.getNumberOfCases()));
 
-		for (int i = 0; i < this.getNumberOfCases(); i++) {
-			for (int j = 0; j < this.cases[i].size(); j++) {
-				box.cases[i].add(this.cases[i].get(j));
+		List<List<VocabularyCard>> mine = this.getCases();
+		List<List<VocabularyCard>> others = other.getCases();
+
+		for (int i = 0; i < mine.size(); i++) {
+			for (VocabularyCard card : mine.get(i)) {
+				box.add(i, card);
 			}
 		}
 
-		for (int i = 0; i < other.getNumberOfCases(); i++) {
-			for (int j = 0; j < other.cases[i].size(); j++) {
-				VocabularyCard card = other.cases[i].get(j);
-				int found = box.find(card);
-				if (found < 0) { // box does not contain vocab jet
-					box.cases[i].add(card);
+		for (int i = 0; i < others.size(); i++) {
+			for (VocabularyCard card : others.get(i)) {
+				Node found = box.node(card.getEnglish());
+				if (found == null) { // box does not contain vocab jet
+					box.add(i, card);
 				} else { // box does already contain vocab, so let's put it into
 						 // the lower of both prior cases and merge
-					card = box.remove(card).merge(card);
-					box.cases[Math.min(found, i)].add(card);
+					box.unlink(found);
+					box.add(Math.min(found.caseNo, i), found.card.merge(card));
 				}
 			}
 		}
 
+		box.publish();
 		return box;
 	}
 }
@@ -1,5 +1,7 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -19,9 +21,21 @@ public class VocabularyCard implements Serializable
 	 * 
 	 */
 	private static final long serialVersionUID = -2500453800565619402L;
+
 	private String english;
 	private List<List<String>> germans;
 	
+	/** the time the card is due for review in ms since the epoch, 0 if it is new */
+	private long due = 0;
+	/** the number of days between the last review and the due time */
+	private int interval = 0;
+	/** the ease factor in thousandths, see <tt>Scheduler</tt> */
+	private int ease = Scheduler.INITIAL_EASE;
+	/** the number of reviews in a row the card has been known */
+	private int repetitions = 0;
+	/** the box the card is in, told when the vocab or the translations change */
+	private transient volatile VocabularyBox box;
+	
 	/**
 	 * Creates a new VocabularyCard with a foreign language vocab and an empty list of translations
 	 * @param english The vocab in the foreign language
@@ -43,6 +57,7 @@ public class VocabularyCard implements Serializable
 		if(!germans.contains(l))
 		{
 			germans.add(l);
+			edited();
 			return true;
 		}
 		return false;
@@ -55,7 +70,10 @@ public class VocabularyCard implements Serializable
 	 */
 	public boolean removeGerman(String[] german)
 	{
-		return germans.remove(Arrays.asList(german));
+		if(!germans.remove(Arrays.asList(german)))
+			return false;
+		edited();
+		return true;
 	}
 	
 	/**
@@ -65,7 +83,20 @@ public class VocabularyCard implements Serializable
 	 */
 	public boolean removeGerman(int index)
 	{
-		return germans.remove(index) != null;
+		if(germans.remove(index) == null)
+			return false;
+		edited();
+		return true;
+	}
+	
+	/**
+	 * Tells the box of the card that its translations have changed.
+	 */
+	private void edited()
+	{
+		VocabularyBox b = box;
+		if(b != null)
+			b.edited(this);
 	}
 	
 	@Override
@@ -79,6 +110,17 @@ public class VocabularyCard implements Serializable
 		return false;
 	}
 	
+	/**
+	 * Cards equal by their vocab, so the hash code is the one of the vocab.
+	 * A card must not be renamed while it is in a hash based collection, or
+	 * it is lost there.
+	 */
+	@Override
+	public int hashCode()
+	{
+		return english == null ? 0 : english.hashCode();
+	}
+	
 	public String getEnglish()
 	{
 		return english;
@@ -86,7 +128,20 @@ public class VocabularyCard implements Serializable
 	
 	public void setEnglish(String english)
 	{
+		String old = this.english;
 		this.english = english;
+		VocabularyBox b = box;
+		if(b != null)
+			b.renamed(old, english);
+	}
+	
+	/**
+	 * Sets the box that is told when the vocab or the translations of the card change.
+	 * @param box the box containing the card or null
+	 */
+	void setBox(VocabularyBox box)
+	{
+		this.box = box;
 	}
 	
 	public List<List<String>> getGermans()
@@ -94,12 +149,81 @@ public class VocabularyCard implements Serializable
 		return germans;
 	}
 	
+	/**
+	 * Retrieves the time the card is due for review.
+	 * @return the due time in ms since the epoch, 0 if the card has never been reviewed
+	 */
+	public long getDue()
+	{
+		return due;
+	}
+	
+	/**
+	 * Retrieves the number of days between the last review and the due time.
+	 * @return the interval in days, 0 if the card has never been reviewed
+	 */
+	public int getInterval()
+	{
+		return interval;
+	}
+	
+	/**
+	 * Retrieves the factor the interval grows by when the card is known.
+	 * @return the ease factor in thousandths, e.g. 2500 for 2.5
+	 */
+	public int getEase()
+	{
+		return ease;
+	}
+	
+	/**
+	 * Retrieves the number of reviews in a row the card has been known.
+	 * @return the number of successful reviews since the last failed one
+	 */
+	public int getRepetitions()
+	{
+		return repetitions;
+	}
+	
+	/**
+	 * Sets the schedule of the card. Only a VocabularyBox may change it, as it
+	 * orders its cards by their due time.
+	 */
+	void schedule(long due, int interval, int ease, int repetitions)
+	{
+		this.due = due;
+		this.interval = interval;
+		this.ease = ease;
+		this.repetitions = repetitions;
+	}
+	
+	/**
+	 * Sets the schedule of the card to the one of <tt>other</tt>.
+	 */
+	void schedule(VocabularyCard other)
+	{
+		schedule(other.due, other.interval, other.ease, other.repetitions);
+	}
+	
+	/**
+	 * Creates a copy of this card that does not change when this card does.
+	 * @return a new card with the same vocab, translations and schedule
+	 */
+	VocabularyCard copy()
+	{
+		VocabularyCard card = new VocabularyCard(english);
+		card.germans.addAll(germans);
+		card.schedule(this);
+		return card;
+	}
+	
 	public VocabularyCard merge(VocabularyCard other)
 	{
 		if(!this.getEnglish().equals(other.getEnglish()))
 			return null;
 		
 		VocabularyCard card = new VocabularyCard(this.getEnglish());
+		card.schedule(this);
 		for(List<String> l : this.germans)
 		{
 			card.germans.add(l);
@@ -112,4 +236,12 @@ public class VocabularyCard implements Serializable
 		
 		return card;
 	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		// cards serialized before they had a schedule
+		if(ease == 0)
+			ease = Scheduler.INITIAL_EASE;
+	}
 }
@@ -0,0 +1,105 @@
+package test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import model.VocabularyBox;
+import model.VocabularyCard;
+
+/**
+ * Measures storing and loading a VocabularyBox in the format of
+ * <tt>BoxFile</tt> against Java serialization, the format of earlier
+ * versions, and the sizes of both files. The boxes of several sizes have two
+ * translations per card, and half of their cards have been answered, so
+ * they are spread over the cases. Every measurement is repeated in a few
+ * rounds, so the later rounds show the times after the JIT compiler has done
+ * its work.
+ *
+ * Usage: BoxFileBenchmark [rounds [cards...]], by default 3 rounds of 10000
+ * and 1000000 cards
+ */
+public class BoxFileBenchmark {
+
+	private static final String[] TYPES = { "noun", "verb", "adj", "adv", "" };
+
+	public static void main(String[] args) throws Exception {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int[] sizes = { 10000, 1000000 };
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		File serialized = File.createTempFile("serialized", ".vobo");
+		File binary = File.createTempFile("binary", ".vobo");
+
+		for (int cards : sizes) {
+			VocabularyBox box = createBox(cards);
+			for (int round = 0; round < rounds; round++) {
+				long t = System.nanoTime();
+				ObjectOutputStream out = new ObjectOutputStream(
+						new BufferedOutputStream(new FileOutputStream(
+								serialized)));
+				try {
+					out.writeObject(box);
+				} finally {
+					out.close();
+				}
+				double storeSerialized = millis(t);
+
+				t = System.nanoTime();
+				ObjectInputStream in = new ObjectInputStream(
+						new BufferedInputStream(new FileInputStream(serialized)));
+				try {
+					in.readObject();
+				} finally {
+					in.close();
+				}
+				double loadSerialized = millis(t);
+
+				t = System.nanoTime();
+				box.storeInFile(binary.getPath());
+				double storeBinary = millis(t);
+
+				t = System.nanoTime();
+				VocabularyBox.loadFromFile(binary.getPath());
+				double loadBinary = millis(t);
+
+				System.out.printf("%d cards, round %d: serialized store %.0f "
+						+ "ms, load %.0f ms, %d bytes; binary store %.0f ms, "
+						+ "load %.0f ms, %d bytes%n", cards, round,
+						storeSerialized, loadSerialized, serialized.length(),
+						storeBinary, loadBinary, binary.length());
+			}
+		}
+
+		serialized.delete();
+		binary.delete();
+	}
+
+	private static VocabularyBox createBox(int cards) {
+		VocabularyBox box = new VocabularyBox();
+		for (int i = 0; i < cards; i++) {
+			VocabularyCard card = new VocabularyCard("word" + i);
+			card.addGerman(new String[] { "word" + i, "Wort" + i,
+					TYPES[i % TYPES.length] });
+			card.addGerman(new String[] { "word" + i, "Begriff" + (i / 3),
+					TYPES[(i + 1) % TYPES.length] });
+			box.insert(card);
+		}
+		for (int i = 0; i < cards / 2; i++) {
+			box.answerVocabInCase(0, i % 3 != 0);
+		}
+		return box;
+	}
+
+	private static double millis(long start) {
+		return (System.nanoTime() - start) / 1e6;
+	}
+}
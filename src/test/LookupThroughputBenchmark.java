@@ -0,0 +1,176 @@
+package test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.SQLManager;
+
+/**
+ * Measures the throughput of concurrent lookups of a <tt>SQLManager</tt>
+ * with a single connection and with a pool of readers in WAL mode. For 1, 2,
+ * 4, ... threads up to twice the number of processors, every thread
+ * alternately looks up a word and the best entries containing a part of a
+ * word, as the clipboard thread does. The last runs repeat the one with a
+ * thread per processor while another thread imports entries into the same
+ * database. Every lookup is for the next word of the dictionary, so few of
+ * them are answered by the cache.
+ *
+ * Usage: LookupThroughputBenchmark [seconds per run]
+ */
+public class LookupThroughputBenchmark {
+
+	private static final int WORDS = 200000;
+	private static final int IMPORTED = 20000;
+	private static final int LIMIT = 24;
+
+	private static final AtomicBoolean stop = new AtomicBoolean();
+	private static final AtomicInteger next = new AtomicInteger();
+	private static final AtomicLong lookups = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int processors = Runtime.getRuntime().availableProcessors();
+		File dir = createTempDir();
+		String path = new File(dir, "words.db").getPath();
+		String dump = new File(dir, "words.txt").getPath();
+		String more = new File(dir, "more.txt").getPath();
+		writeDump(dump, "w", WORDS);
+		writeDump(more, "x", IMPORTED);
+
+		SQLManager manager = new SQLManager(path);
+		manager.insertEntriesFromFile(dump);
+		manager.close();
+
+		System.out.println(processors + " processors");
+		for (int threads = 1; threads <= 2 * processors; threads *= 2) {
+			for (int readers : new int[] { 0, threads }) {
+				manager = new SQLManager(path, readers);
+				double rate = run(manager, threads, seconds, null);
+				System.out.printf("%d threads, %d readers: %.0f lookups/s%n",
+						threads, readers, rate);
+				manager.close();
+			}
+		}
+
+		String copy = new File(dir, "copy.db").getPath();
+		for (int readers : new int[] { 0, processors }) {
+			// every import starts with the same database
+			Files.copy(Paths.get(path), Paths.get(copy),
+					StandardCopyOption.REPLACE_EXISTING);
+			manager = new SQLManager(copy, readers);
+			double rate = run(manager, processors, seconds, more);
+			System.out.printf("%d threads, %d readers while importing: "
+					+ "%.0f lookups/s%n", processors, readers, rate);
+			manager.close();
+		}
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Runs lookups in <tt>threads</tt> threads for <tt>seconds</tt> seconds
+	 * and, if <tt>importPath</tt> is not null, imports it meanwhile.
+	 *
+	 * @return the lookups per second
+	 */
+	private static double run(final SQLManager manager, int threads,
+			int seconds, final String importPath) throws InterruptedException {
+		stop.set(false);
+		lookups.set(0);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int k = 0; k < threads; k++) {
+			workers.add(new Worker() {
+				@Override
+				void step() {
+					int i = next.getAndIncrement() % WORDS;
+					if ((i & 1) == 0)
+						manager.searchForEnglish("w" + i, false);
+					else
+						// the words containing the last digits of the word
+						manager.searchForEnglish("" + (i % 100000), true,
+								LIMIT);
+					lookups.incrementAndGet();
+				}
+			});
+		}
+		Thread importer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					manager.insertEntriesFromFile(importPath);
+				} catch (FileNotFoundException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+
+		long t = System.nanoTime();
+		for (Thread w : workers) {
+			w.start();
+		}
+		if (importPath != null)
+			importer.start();
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		for (Thread w : workers) {
+			w.join();
+		}
+		double rate = lookups.get() / ((System.nanoTime() - t) / 1e9);
+		if (importPath != null)
+			importer.join();
+		return rate;
+	}
+
+	/**
+	 * Repeats <tt>step</tt> until the run stops.
+	 */
+	private static abstract class Worker extends Thread {
+		abstract void step();
+
+		@Override
+		public void run() {
+			while (!stop.get()) {
+				step();
+			}
+		}
+	}
+
+	/**
+	 * Writes a dump of <tt>count</tt> entries whose English words are the
+	 * prefix followed by the number of the entry.
+	 */
+	private static void writeDump(String path, String prefix, int count)
+			throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
+		try {
+			for (int i = 0; i < count; i++) {
+				out.write(prefix + i + "\tg" + i + "\tnoun\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static File createTempDir() throws IOException {
+		File dir = File.createTempFile("benchmark", "");
+		dir.delete();
+		if (!dir.mkdir())
+			throw new IOException("could not create " + dir);
+		return dir;
+	}
+}
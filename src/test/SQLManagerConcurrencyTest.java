@@ -0,0 +1,201 @@
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.SQLManager;
+
+/**
+ * Concurrency test of the pool of readers of a <tt>SQLManager</tt>. Readers
+ * search concurrently while another thread switches between three databases
+ * and truncates and refills one of them. Every database translates the same
+ * English words with German words tagged with the name of the database, so
+ * a search must return rows of a single database, never fail on a closed
+ * connection and, once a switch has returned, only see the new database.
+ *
+ * Usage: SQLManagerConcurrencyTest [seconds]
+ */
+public class SQLManagerConcurrencyTest {
+
+	private static final int WORDS = 2000;
+	private static final int READERS = 4;
+	private static final String[] NAMES = { "a", "b", "c" };
+
+	private static final AtomicBoolean stop = new AtomicBoolean();
+	private static final AtomicLong searches = new AtomicLong();
+	private static final AtomicLong switches = new AtomicLong();
+	private static final List<String> failures = new ArrayList<String>();
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		File dir = createTempDir();
+
+		final String[] paths = new String[NAMES.length];
+		final String[] dumps = new String[NAMES.length];
+		for (int i = 0; i < NAMES.length; i++) {
+			paths[i] = new File(dir, NAMES[i] + ".db").getPath();
+			dumps[i] = new File(dir, NAMES[i] + ".txt").getPath();
+			writeDump(dumps[i], NAMES[i]);
+			SQLManager m = new SQLManager(paths[i]);
+			m.insertEntriesFromFile(dumps[i]);
+			m.close();
+		}
+
+		final SQLManager manager = new SQLManager(paths[0], READERS);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int k = 0; k < READERS + 2; k++) {
+			final Random random = new Random(k);
+			threads.add(new Worker() {
+				@Override
+				void step() throws Exception {
+					String word = "w" + random.nextInt(WORDS);
+					switch (random.nextInt(3)) {
+					case 0:
+						check(manager.searchForEnglish(word, false), word, 1);
+						break;
+					case 1:
+						// all words starting with the digit, from one database
+						check(manager.searchForEnglish(word.substring(0, 2),
+								true), word, -1);
+						break;
+					default:
+						// the many limits keep most searches out of the cache
+						check(manager.searchForEnglishAsync(word, false,
+								1 + random.nextInt(WORDS)).get().getEntries(),
+								word, 1);
+					}
+					searches.incrementAndGet();
+				}
+			});
+		}
+		final Random random = new Random(100);
+		threads.add(new Worker() {
+			@Override
+			void step() throws Exception {
+				int next = random.nextInt(NAMES.length);
+				manager.switchDatabase(paths[next]);
+				expect(manager, next, "after switching");
+				// c is truncated and refilled while it is in use
+				if (next == 2 && random.nextBoolean()) {
+					manager.truncate();
+					if (!manager.searchForEnglish("w0", false).isEmpty())
+						fail("c was not empty after truncating");
+					manager.insertEntriesFromFile(dumps[2]);
+					expect(manager, next, "after refilling");
+				}
+				switches.incrementAndGet();
+			}
+		});
+
+		for (Thread t : threads) {
+			t.start();
+		}
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		for (Thread t : threads) {
+			t.join();
+		}
+		System.out.println(searches.get() + " searches, "
+				+ manager.getLookupCache().getMisses() + " of them not cached, "
+				+ switches.get() + " switches");
+		manager.close();
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+
+		if (!failures.isEmpty()) {
+			System.out.println(failures.size() + " failures, e.g. "
+					+ failures.get(0));
+			System.exit(1);
+		}
+		System.out.println("passed");
+	}
+
+	/**
+	 * Repeats <tt>step</tt> until the test stops and records its exceptions
+	 * as failures, e.g. of searches on a closed connection.
+	 */
+	private static abstract class Worker extends Thread {
+		abstract void step() throws Exception;
+
+		@Override
+		public void run() {
+			while (!stop.get()) {
+				try {
+					step();
+				} catch (Exception e) {
+					e.printStackTrace();
+					fail(e.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that the rows of a search for <tt>word</tt> come from a single
+	 * database. A search may find nothing while c is truncated.
+	 *
+	 * @param size
+	 *            the expected number of rows, -1 for any number
+	 */
+	private static void check(LinkedList<String[]> rows, String word, int size) {
+		if (rows.isEmpty())
+			return;
+		if (size >= 0 && rows.size() != size)
+			fail(rows.size() + " rows for " + word);
+
+		String name = name(rows.getFirst());
+		for (String[] row : rows) {
+			if (!name(row).equals(name))
+				fail("rows of " + name + " and " + name(row) + " for "
+						+ word);
+		}
+	}
+
+	/**
+	 * Checks that the database with the given index is in use.
+	 */
+	private static void expect(SQLManager manager, int index, String when) {
+		LinkedList<String[]> rows = manager.searchForEnglish("w0", false);
+		if (rows.size() != 1 || !name(rows.getFirst()).equals(NAMES[index]))
+			fail("searches did not use " + NAMES[index] + " " + when);
+	}
+
+	private static String name(String[] row) {
+		return row[1].substring(0, row[1].indexOf('-'));
+	}
+
+	private static void writeDump(String path, String name) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
+		try {
+			for (int i = 0; i < WORDS; i++) {
+				out.write("w" + i + "\t" + name + "-w" + i + "\tnoun\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static synchronized void fail(String message) {
+		failures.add(message);
+	}
+
+	private static File createTempDir() throws IOException {
+		File dir = File.createTempFile("concurrency", "");
+		dir.delete();
+		if (!dir.mkdir())
+			throw new IOException("could not create " + dir);
+		return dir;
+	}
+}
@@ -0,0 +1,178 @@
+package test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+import model.SQLManager;
+
+/**
+ * Measures the latency of infix searches like the ones of every clipboard
+ * copy at dictionaries of several sizes. For every size a dictionary of
+ * generated dict.cc-like entries is imported, then random parts of its
+ * English words are searched for with <tt>LIKE</tt> by a full table scan,
+ * through the n-gram index with and without a limit and in the in-memory
+ * dictionary. Every term is searched for only once, so the searches are not
+ * answered by the cache.
+ *
+ * Importing takes a while, 5 million rows need several minutes and the
+ * in-memory dictionary of them about 1 GB of heap.
+ *
+ * Usage: SearchBenchmark [rows...], by default 100000 1000000 5000000
+ */
+public class SearchBenchmark {
+
+	private static final int SEARCHES = 1000;
+	private static final int SCANS = 20;
+	private static final int LIMIT = 24;
+	private static final String[] TYPES = { "noun", "verb", "adj", "adv", "" };
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 100000, 1000000, 5000000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		File dir = createTempDir();
+
+		for (int rows : sizes) {
+			String path = new File(dir, rows + ".db").getPath();
+			String dump = new File(dir, rows + ".txt").getPath();
+			writeDump(dump, rows);
+
+			SQLManager manager = new SQLManager(path);
+			long t = System.nanoTime();
+			manager.insertEntriesFromFile(dump);
+			double seconds = (System.nanoTime() - t) / 1e9;
+			new File(dump).delete();
+
+			double scan = scan(path, terms(rows, SCANS, 1));
+			double indexed = search(manager, terms(rows, SEARCHES, 2), 0);
+			double limited = search(manager, terms(rows, SEARCHES, 3), LIMIT);
+			manager.loadIntoMemory();
+			double memory = search(manager, terms(rows, SEARCHES, 4), 0);
+			manager.close();
+
+			System.out.printf("%d rows (imported in %.0f s): LIKE scan %.2f ms, "
+					+ "index %.3f ms, index limit %d %.3f ms, "
+					+ "in memory %.3f ms%n", rows, seconds, scan, indexed,
+					LIMIT, limited, memory);
+			new File(path).delete();
+		}
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Retrieves the mean time in ms of searching for every term.
+	 */
+	private static double search(SQLManager manager, String[] terms,
+			int limit) {
+		long t = System.nanoTime();
+		for (String term : terms) {
+			if (limit > 0)
+				manager.searchForEnglish(term, true, limit);
+			else
+				manager.searchForEnglish(term, true);
+		}
+		return (System.nanoTime() - t) / 1e6 / terms.length;
+	}
+
+	/**
+	 * Retrieves the mean time in ms of searching for every term by a full
+	 * table scan, the way searches were answered without the n-gram index.
+	 */
+	private static double scan(String path, String[] terms)
+			throws SQLException {
+		Connection c = DriverManager.getConnection("jdbc:sqlite:" + path);
+		try {
+			PreparedStatement stmt = c.prepareStatement("SELECT english, "
+					+ "german, type FROM EnglishGerman WHERE english LIKE "
+					+ "'%' || ? || '%'");
+			long t = System.nanoTime();
+			for (String term : terms) {
+				stmt.setString(1, term);
+				ResultSet rs = stmt.executeQuery();
+				while (rs.next()) {
+					rs.getString(1);
+				}
+				rs.close();
+			}
+			return (System.nanoTime() - t) / 1e6 / terms.length;
+		} finally {
+			c.close();
+		}
+	}
+
+	/**
+	 * Retrieves <tt>count</tt> parts of 3 to 5 letters of the English words
+	 * of the dictionary with <tt>rows</tt> entries.
+	 */
+	private static String[] terms(int rows, int count, long seed) {
+		Random random = new Random(seed);
+		String[] res = new String[count];
+		for (int i = 0; i < count; i++) {
+			String word = word(new Random(random.nextInt(rows)));
+			int length = Math.min(word.length(), 3 + random.nextInt(3));
+			int from = random.nextInt(word.length() - length + 1);
+			res[i] = word.substring(from, from + length);
+		}
+		return res;
+	}
+
+	/**
+	 * Writes a dump of <tt>rows</tt> entries. The English words of entry
+	 * <tt>i</tt> are generated by a random generator seeded with
+	 * <tt>i</tt>, so <tt>terms</tt> can find them again.
+	 */
+	private static void writeDump(String path, int rows) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
+		try {
+			Random random = new Random();
+			for (int i = 0; i < rows; i++) {
+				StringBuilder german = new StringBuilder();
+				for (int j = random.nextInt(3); j >= 0; j--) {
+					german.append(word(random)).append(j > 0 ? " " : "");
+				}
+				out.write(word(new Random(i)) + " " + i + "\t" + german
+						+ "\t" + TYPES[random.nextInt(TYPES.length)] + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Generates a word of 3 to 10 letters, more frequent letters more often.
+	 */
+	private static String word(Random random) {
+		String letters = "eeeeeeeeeeeettttttttaaaaaaaoooooooiiiiiiinnnnnnn"
+				+ "sssssshhhhhhrrrrrrddddllllcccuuummwwffggyyppbbvkjxqz";
+		char[] res = new char[3 + random.nextInt(8)];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = letters.charAt(random.nextInt(letters.length()));
+		}
+		return new String(res);
+	}
+
+	private static File createTempDir() throws IOException {
+		File dir = File.createTempFile("benchmark", "");
+		dir.delete();
+		if (!dir.mkdir())
+			throw new IOException("could not create " + dir);
+		return dir;
+	}
+}
@@ -71,7 +71,14 @@ public class Test {
 		}
 
 		try {
-			tmpsql = new SQLManager(dbPath);
+			tmpbox.startJournal(vbPath);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		try {
+			tmpsql = new SQLManager(dbPath, Runtime.getRuntime()
+					.availableProcessors());
 			tmpview = new SystemTrayView(iconPath, tmpbox, tmpsql);
 			tmpclip = new ClipboardManager();
 		} catch (Exception e) {
@@ -86,6 +93,9 @@ public class Test {
 		
 		view.setDatabaseFile(dbPath);
 		view.setVbFile(vbPath);
+		if (box.getReplayWarning() != null)
+			view.displayMessage("WARNING", box.getReplayWarning(),
+					MessageType.WARNING);
 	}
 
 	/**
@@ -103,6 +113,7 @@ public class Test {
 							"writing to " + view.getVbFile().getAbsolutePath() + " failed",
 							MessageType.ERROR);
 				}
+				box.closeJournal();
 				sql.close();
 			}
 		});
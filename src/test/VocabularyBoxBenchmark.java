@@ -0,0 +1,82 @@
+package test;
+
+import java.util.Random;
+
+import model.VocabularyBox;
+import model.VocabularyCard;
+
+/**
+ * Measures the operations on the queue of a case of a VocabularyBox with
+ * 100000 cards in case 0: answering with a small and a large limit,
+ * answering without a limit, shuffling and removing and inserting a card.
+ * Every measurement is repeated in a few rounds, so the later rounds show
+ * the times after the JIT compiler has done its work.
+ *
+ * Usage: VocabularyBoxBenchmark [rounds]
+ */
+public class VocabularyBoxBenchmark {
+
+	private static final int VOCABS = 100000;
+	private static final int ANSWERS = 2000000;
+	private static final int SHUFFLES = 100;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		VocabularyBox box = new VocabularyBox();
+		for (int i = 0; i < VOCABS; i++) {
+			VocabularyCard card = new VocabularyCard("w" + i);
+			card.addGerman(new String[] { "w" + i, "g" + i, "noun" });
+			box.insert(card);
+		}
+
+		for (int round = 0; round < rounds; round++) {
+			long t = System.nanoTime();
+			for (int i = 0; i < ANSWERS; i++) {
+				box.answerVocabInCaseZeroWithLimit(5, false);
+			}
+			double limit5 = nanos(t, ANSWERS);
+
+			t = System.nanoTime();
+			for (int i = 0; i < ANSWERS; i++) {
+				box.answerVocabInCaseZeroWithLimit(24, false);
+			}
+			double limit24 = nanos(t, ANSWERS);
+
+			// puts the card in front of the last 10 cards, fewer times, as
+			// this takes time in the size of the case if done the wrong way
+			t = System.nanoTime();
+			for (int i = 0; i < ANSWERS / 100; i++) {
+				box.answerVocabInCaseZeroWithLimit(VOCABS - 11, false);
+			}
+			double limitLarge = nanos(t, ANSWERS / 100);
+
+			t = System.nanoTime();
+			for (int i = 0; i < ANSWERS; i++) {
+				box.answerVocabInCase(0, false);
+			}
+			double answer = nanos(t, ANSWERS);
+
+			t = System.nanoTime();
+			for (int i = 0; i < SHUFFLES; i++) {
+				box.shuffleCase(0);
+			}
+			double shuffle = nanos(t, SHUFFLES) / 1000000;
+
+			Random random = new Random(round);
+			t = System.nanoTime();
+			for (int i = 0; i < ANSWERS / 10; i++) {
+				box.insert(box.remove("w" + random.nextInt(VOCABS)));
+			}
+			double removeInsert = nanos(t, ANSWERS / 10);
+
+			System.out.printf("round %d: limit 5 %.0f ns, limit 24 %.0f ns, "
+					+ "limit %d %.0f ns, answer %.0f ns, shuffle %.2f ms, "
+					+ "remove and insert %.0f ns%n", round, limit5, limit24,
+					VOCABS - 11, limitLarge, answer, shuffle, removeInsert);
+		}
+	}
+
+	private static double nanos(long start, int count) {
+		return (System.nanoTime() - start) / (double) count;
+	}
+}
@@ -0,0 +1,228 @@
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.VocabularyBox;
+import model.VocabularyCard;
+
+/**
+ * Stress test of a journaled VocabularyBox used by concurrent readers and
+ * writers. Writers insert, merge, remove, answer and shuffle cards and store
+ * the box, while readers look up vocabularies without waiting for the
+ * writers. The pinned vocabularies are merged and answered but never removed,
+ * so a reader must always find them. Afterwards the box, a stored copy and
+ * the replayed journal must contain the same cards.
+ *
+ * Usage: VocabularyBoxStressTest [seconds]
+ */
+public class VocabularyBoxStressTest {
+
+	private static final int VOCABS = 20000;
+	private static final int PINNED = 100;
+
+	private static final AtomicBoolean stop = new AtomicBoolean();
+	private static final AtomicLong writes = new AtomicLong();
+	private static final AtomicLong reads = new AtomicLong();
+	private static final List<String> failures = new ArrayList<String>();
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		File dir = createTempDir();
+		String path = new File(dir, "stress.vobo").getPath();
+
+		final VocabularyBox box = new VocabularyBox();
+		for (int i = 0; i < VOCABS; i++) {
+			box.insert(card("w" + i, "g" + i));
+		}
+		for (int i = 0; i < PINNED; i++) {
+			box.insert(card("p" + i, "g" + i));
+		}
+		box.startJournal(path);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int k = 0; k < 2; k++) {
+			final Random random = new Random(k);
+			threads.add(new Worker() {
+				@Override
+				void step() {
+					String vocab = "w" + random.nextInt(2 * VOCABS);
+					switch (random.nextInt(4)) {
+					case 0:
+						box.insert(card(vocab, "t" + random.nextInt(5)));
+						break;
+					case 1:
+						box.remove(vocab);
+						break;
+					case 2:
+						box.insert(vocab);
+						break;
+					default:
+						// merges the translations of a pinned vocabulary
+						box.insert(card("p" + random.nextInt(PINNED), "t"
+								+ random.nextInt(5)));
+					}
+					writes.incrementAndGet();
+				}
+			});
+		}
+		for (int k = 0; k < 2; k++) {
+			final Random random = new Random(10 + k);
+			threads.add(new Worker() {
+				@Override
+				void step() {
+					int caseNo = random.nextInt(box.getNumberOfCases());
+					try {
+						if (caseNo == 0 && random.nextBoolean())
+							box.answerVocabInCaseZeroWithLimit(
+									random.nextInt(20), random.nextBoolean());
+						else
+							box.answerVocabInCase(caseNo, random.nextBoolean());
+						writes.incrementAndGet();
+					} catch (NoSuchElementException e) {
+						// the case is empty
+					}
+				}
+			});
+		}
+		final Random shuffles = new Random(20);
+		threads.add(new Worker() {
+			@Override
+			void step() throws Exception {
+				box.shuffleCase(shuffles.nextInt(box.getNumberOfCases()));
+				writes.incrementAndGet();
+				Thread.sleep(5);
+			}
+		});
+		final String backup = new File(dir, "backup.vobo").getPath();
+		threads.add(new Worker() {
+			@Override
+			void step() throws Exception {
+				box.storeInFile(backup);
+				Thread.sleep(200);
+			}
+		});
+		for (int k = 0; k < 2; k++) {
+			final Random random = new Random(30 + k);
+			threads.add(new Worker() {
+				@Override
+				void step() {
+					String pinned = "p" + random.nextInt(PINNED);
+					if (box.find(pinned) < 0)
+						fail(pinned + " was not found");
+					for (int v : box.getCaseVolumes()) {
+						if (v < 0)
+							fail("negative volume " + v);
+					}
+					box.find("w" + random.nextInt(2 * VOCABS));
+					box.getNextVocabInCase(random.nextInt(box
+							.getNumberOfCases()));
+					reads.incrementAndGet();
+				}
+			});
+		}
+
+		for (Thread t : threads) {
+			t.start();
+		}
+		Thread.sleep(seconds * 1000L);
+		stop.set(true);
+		for (Thread t : threads) {
+			t.join();
+		}
+		System.out.println(writes.get() + " writes, " + reads.get() + " reads");
+
+		String stored = new File(dir, "final.vobo").getPath();
+		box.storeInFile(stored);
+		box.closeJournal();
+		check(box, VocabularyBox.loadFromFile(stored), "stored copy");
+		check(box, VocabularyBox.loadFromFile(path), "replayed journal");
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+
+		if (!failures.isEmpty()) {
+			System.out.println(failures.size() + " failures, e.g. "
+					+ failures.get(0));
+			System.exit(1);
+		}
+		System.out.println("passed");
+	}
+
+	/**
+	 * Repeats <tt>step</tt> until the test stops and records its exceptions
+	 * as failures.
+	 */
+	private static abstract class Worker extends Thread {
+		abstract void step() throws Exception;
+
+		@Override
+		public void run() {
+			while (!stop.get()) {
+				try {
+					step();
+				} catch (Exception e) {
+					e.printStackTrace();
+					fail(e.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that <tt>copy</tt> contains every card of <tt>box</tt> in the
+	 * same case and nothing else. Empties <tt>copy</tt>.
+	 */
+	private static void check(VocabularyBox box, VocabularyBox copy,
+			String name) {
+		if (!Arrays.equals(box.getCaseVolumes(), copy.getCaseVolumes()))
+			fail(name + " has volumes " + Arrays.toString(copy.getCaseVolumes())
+					+ " instead of " + Arrays.toString(box.getCaseVolumes()));
+
+		Set<String> seen = new HashSet<String>();
+		for (int caseNo = 0; caseNo < copy.getNumberOfCases(); caseNo++) {
+			VocabularyCard card;
+			while ((card = copy.getNextVocabInCase(caseNo)) != null) {
+				if (!seen.add(card.getEnglish()))
+					fail(name + " contains " + card.getEnglish() + " twice");
+				if (box.find(card.getEnglish()) != caseNo)
+					fail(name + " has " + card.getEnglish() + " in case "
+							+ caseNo + " instead of "
+							+ box.find(card.getEnglish()));
+				copy.remove(card);
+			}
+		}
+		if (seen.size() != box.getVolume())
+			fail(name + " has " + seen.size() + " cards instead of "
+					+ box.getVolume());
+	}
+
+	private static VocabularyCard card(String vocab, String german) {
+		VocabularyCard card = new VocabularyCard(vocab);
+		card.addGerman(new String[] { vocab, german, "noun" });
+		return card;
+	}
+
+	private static synchronized void fail(String message) {
+		failures.add(message);
+	}
+
+	private static File createTempDir() throws IOException {
+		File dir = File.createTempFile("stress", "");
+		dir.delete();
+		if (!dir.mkdir())
+			throw new IOException("could not create " + dir);
+		return dir;
+	}
+}
@@ -18,7 +18,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import model.SQLManager;
-import model.VocabularyBox;
+import model.CardBox;
 
 /**
  * 
@@ -56,7 +56,7 @@ public class SystemTrayView extends TrayIcon {
 	 * @param iconPath
 	 *            path to an image file used for the icon
 	 */
-	public SystemTrayView(String iconPath, VocabularyBox box, SQLManager manager) {
+	public SystemTrayView(String iconPath, CardBox box, SQLManager manager) {
 		super(new ImageIcon(iconPath).getImage(), "LearningByNeeding", null);
 
 		if (!SystemTray.isSupported())
@@ -64,8 +64,7 @@ public class SystemTrayView extends TrayIcon {
 
 		this.manager = manager;
 		
-		//vboxView = new VocabularyBoxWindow(box, this.getImage(), manager);
-		vboxView = new VocabularyBoxWindow(box, this.getImage());
+		vboxView = new VocabularyBoxWindow(box, this.getImage(), manager);
 		vboxView.setVisible(false);
 		
 		databaseChooser = new JFileChooser(new File(System.getProperty("user.dir")));
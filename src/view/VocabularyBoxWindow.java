@@ -8,30 +8,80 @@ import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
 import javax.swing.JPanel;
 
-import model.VocabularyBox;
+import model.CardBox;
 import javax.swing.BoxLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.DefaultListModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 
 import controller.FinalAction;
+import model.SQLManager;
+import model.SearchResult;
 
 @SuppressWarnings("serial")
 public class VocabularyBoxWindow extends JFrame {
 
-	private VocabularyBox box;
+	/**
+	 * The number of completions shown while typing into the lookup field.
+	 */
+	private static final int COMPLETIONS = 10;
+
+	/**
+	 * The maximum number of translations shown for a looked up word.
+	 */
+	private static final int TRANSLATIONS = 50;
+
+	private static final Executor EDT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			SwingUtilities.invokeLater(command);
+		}
+
+	};
+
+	private CardBox box;
+	private SQLManager manager;
 	private JPanel[] panels;
 	private JLabel[] labels;
 
+	private JTextField lookupField;
+	private DefaultListModel<String> completions;
+	private JTextArea translations;
+
 	/**
 	 * Create the application.
 	 */
-	public VocabularyBoxWindow(VocabularyBox box, Image image) {
+	public VocabularyBoxWindow(CardBox box, Image image) {
+		this(box, image, null);
+	}
+
+	/**
+	 * Create the application with a lookup tab that completes English words
+	 * while typing and shows the translations of the chosen word.
+	 */
+	public VocabularyBoxWindow(CardBox box, Image image,
+			SQLManager manager) {
 		super("Vocabulary Box");
 		this.setIconImage(image);
 		this.box = box;
+		this.manager = manager;
 		initialize();
 	}
 
@@ -105,11 +155,119 @@ public class VocabularyBoxWindow extends JFrame {
 			});
 			
 			
+		}
+		if(manager != null) {
+			tabbedPane.addTab("lookup", createLookupPanel());
 		}
 		setText();
 		this.pack();
 	}
 
+	private JPanel createLookupPanel() {
+		JPanel panel = new JPanel();
+		panel.setLayout(new BoxLayout(panel, BoxLayout.PAGE_AXIS));
+		
+		lookupField = new JTextField();
+		lookupField.setMaximumSize(new Dimension(Integer.MAX_VALUE, lookupField.getPreferredSize().height));
+		panel.add(lookupField);
+		
+		completions = new DefaultListModel<String>();
+		final JList<String> completionList = new JList<String>(completions);
+		panel.add(new JScrollPane(completionList));
+		
+		translations = new JTextArea();
+		translations.setEditable(false);
+		panel.add(new JScrollPane(translations));
+		
+		lookupField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				complete(lookupField.getText());
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				complete(lookupField.getText());
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+			}
+		});
+		lookupField.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				lookUp(lookupField.getText().trim());
+			}
+		});
+		completionList.addListSelectionListener(new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent e) {
+				if(!e.getValueIsAdjusting() && completionList.getSelectedValue() != null) {
+					lookUp(completionList.getSelectedValue());
+				}
+			}
+		});
+		
+		return panel;
+	}
+
+	private void complete(final String prefix) {
+		if(prefix.trim().isEmpty()) {
+			completions.clear();
+			return;
+		}
+		
+		manager.completeEnglishAsync(prefix.trim(), COMPLETIONS).whenCompleteAsync(new BiConsumer<LinkedList<String>, Throwable>() {
+			@Override
+			public void accept(LinkedList<String> words, Throwable failure) {
+				//ignore completions of text that has been changed meanwhile
+				if(!prefix.equals(lookupField.getText()))
+					return;
+				completions.clear();
+				if(failure != null) {
+					failure.printStackTrace();
+					translations.setText("'" + prefix.trim() + "' could not be completed");
+					return;
+				}
+				//the words are already ranked, best first
+				for(String word : words) {
+					completions.addElement(word);
+				}
+			}
+		}, EDT);
+	}
+
+	private void lookUp(final String english) {
+		if(english.isEmpty())
+			return;
+		
+		manager.searchForEnglishAsync(english, false, TRANSLATIONS).whenCompleteAsync(new BiConsumer<SearchResult, Throwable>() {
+			@Override
+			public void accept(SearchResult result, Throwable failure) {
+				if(failure != null) {
+					failure.printStackTrace();
+					translations.setText("'" + english + "' could not be looked up");
+					return;
+				}
+				//the entries are already ranked, best first
+				StringBuilder text = new StringBuilder();
+				for(String[] entry : result.getEntries()) {
+					text.append(entry[1]);
+					if(entry[2] != null && !entry[2].isEmpty())
+						text.append(" (").append(entry[2]).append(')');
+					text.append('\n');
+				}
+				if(result.getEntries().isEmpty())
+					text.append("'").append(english).append("' was not found in database");
+				else if(result.hasMore())
+					text.append("...");
+				translations.setText(text.toString());
+				translations.setCaretPosition(0);
+			}
+		}, EDT);
+	}
+
 	private void setText() {
 		for(int i = 0; i < labels.length; i++) {
 			labels[i].setText(box.getCaseVolumes()[i] + " vocabularies in case " + (i+1));